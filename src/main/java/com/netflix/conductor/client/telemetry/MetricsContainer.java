@@ -31,6 +31,9 @@ public class MetricsContainer {
     private static final String ENTITY_NAME = "entityName";
     private static final String OPERATION = "operation";
     private static final String PAYLOAD_TYPE = "payload_type";
+    private static final String STAGE = "stage";
+    private static final String DECISION = "decision";
+    private static final String REASON = "reason";
 
     private static final String TASK_EXECUTION_QUEUE_FULL = "task_execution_queue_full";
     private static final String TASK_POLL_ERROR = "task_poll_error";
@@ -47,6 +50,26 @@ public class MetricsContainer {
     private static final String EXTERNAL_PAYLOAD_USED = "external_payload_used";
     private static final String WORKFLOW_START_ERROR = "workflow_start_error";
     private static final String THREAD_UNCAUGHT_EXCEPTION = "thread_uncaught_exceptions";
+    private static final String TASK_UPDATE_QUEUE_DEPTH = "task_update_queue_depth";
+    private static final String TASK_UPDATE_RETRY = "task_update_retry";
+    private static final String TASK_UPDATE_ACK_TIME = "task_update_ack_time";
+    private static final String TASK_UPDATE_TIME = "task_update_time";
+    private static final String TASK_CONCURRENCY_LIMIT = "task_concurrency_limit";
+    private static final String TASK_CONCURRENCY_RESIZE = "task_concurrency_resize";
+    private static final String TASK_QUEUE_BACKLOG = "task_queue_backlog";
+    private static final String TASK_PREFETCH_WAIT_TIME = "task_prefetch_wait_time";
+    private static final String TASK_PREFETCH_EXPIRED = "task_prefetch_expired";
+    private static final String TASK_LEASE_EXTEND = "task_lease_extend";
+    private static final String TASK_LEASE_EXTEND_ERROR = "task_lease_extend_error";
+    private static final String WORKER_DRAIN_TIME = "worker_drain_time";
+    private static final String TASK_DRAIN_ABANDONED = "task_drain_abandoned";
+    private static final String TASK_THROTTLED_WAIT_TIME = "task_throttled_wait_time";
+    private static final String REQUEST_COMPRESSION_TIME = "request_compression_time";
+    private static final String REQUEST_COMPRESSION_SAVED_BYTES = "request_compression_saved_bytes";
+    private static final String TASK_IN_FLIGHT = "task_in_flight";
+    private static final String TASK_IN_FLIGHT_OLDEST_AGE = "task_in_flight_oldest_age";
+    private static final String TASK_STUCK = "task_stuck";
+    private static final String TASK_RESULT_DROPPED = "task_result_dropped";
 
     private static final Registry REGISTRY = Spectator.globalRegistry();
     private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
@@ -64,6 +87,34 @@ public class MetricsContainer {
         return getTimer(TASK_EXECUTE_TIME, TASK_TYPE, taskType);
     }
 
+    public static Timer getPrefetchWaitTimer(String taskType) {
+        return getTimer(TASK_PREFETCH_WAIT_TIME, TASK_TYPE, taskType);
+    }
+
+    public static Timer getThrottledWaitTimer(String taskType) {
+        return getTimer(TASK_THROTTLED_WAIT_TIME, TASK_TYPE, taskType);
+    }
+
+    public static Timer getWorkerDrainTimer() {
+        return getTimer(WORKER_DRAIN_TIME);
+    }
+
+    public static Timer getTaskUpdateAckTimer(String taskType) {
+        return getTimer(TASK_UPDATE_ACK_TIME, TASK_TYPE, taskType);
+    }
+
+    public static Timer getTaskUpdateTimer(String taskType) {
+        return getTimer(TASK_UPDATE_TIME, TASK_TYPE, taskType);
+    }
+
+    public static Timer getRequestCompressionTimer() {
+        return getTimer(REQUEST_COMPRESSION_TIME);
+    }
+
+    public static void incrementRequestCompressionSavedBytes(long savedBytes) {
+        getCounter(REQUEST_COMPRESSION_SAVED_BYTES).increment(savedBytes);
+    }
+
     private static Timer getTimer(String name, String... additionalTags) {
         String key = CLASS_NAME + "." + name + "." + String.join(",", additionalTags);
         return TIMERS.computeIfAbsent(
@@ -180,4 +231,57 @@ public class MetricsContainer {
                 EXCEPTION,
                 t.getClass().getSimpleName());
     }
+
+    public static void recordTaskUpdateQueueDepth(String stage, long depth) {
+        getGauge(TASK_UPDATE_QUEUE_DEPTH, STAGE, stage).getAndSet(depth);
+    }
+
+    public static void incrementTaskResultDroppedCount(String reason) {
+        incrementCount(TASK_RESULT_DROPPED, REASON, reason);
+    }
+
+    public static void incrementTaskUpdateRetryCount(String taskType) {
+        incrementCount(TASK_UPDATE_RETRY, TASK_TYPE, taskType);
+    }
+
+    public static void recordTaskConcurrencyLimit(String taskType, int limit) {
+        getGauge(TASK_CONCURRENCY_LIMIT, TASK_TYPE, taskType).getAndSet(limit);
+    }
+
+    public static void incrementTaskConcurrencyResizeCount(String taskType, String decision) {
+        incrementCount(TASK_CONCURRENCY_RESIZE, TASK_TYPE, taskType, DECISION, decision);
+    }
+
+    public static void recordTaskQueueBacklog(String taskType, long backlog) {
+        getGauge(TASK_QUEUE_BACKLOG, TASK_TYPE, taskType).getAndSet(backlog);
+    }
+
+    public static void incrementPrefetchExpiredCount(String taskType) {
+        incrementCount(TASK_PREFETCH_EXPIRED, TASK_TYPE, taskType);
+    }
+
+    public static void incrementTaskLeaseExtendCount(String taskType) {
+        incrementCount(TASK_LEASE_EXTEND, TASK_TYPE, taskType);
+    }
+
+    public static void incrementTaskLeaseExtendErrorCount(String taskType, Throwable t) {
+        incrementCount(
+                TASK_LEASE_EXTEND_ERROR, TASK_TYPE, taskType, EXCEPTION, t.getClass().getSimpleName());
+    }
+
+    public static void incrementTaskDrainAbandonedCount(String taskType, int taskCount) {
+        getCounter(TASK_DRAIN_ABANDONED, TASK_TYPE, taskType).increment(taskCount);
+    }
+
+    public static void recordTaskInFlightCount(String taskType, long count) {
+        getGauge(TASK_IN_FLIGHT, TASK_TYPE, taskType).getAndSet(count);
+    }
+
+    public static void recordTaskInFlightOldestAge(String taskType, long ageMillis) {
+        getGauge(TASK_IN_FLIGHT_OLDEST_AGE, TASK_TYPE, taskType).getAndSet(ageMillis);
+    }
+
+    public static void incrementTaskStuckCount(String taskType) {
+        incrementCount(TASK_STUCK, TASK_TYPE, taskType);
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.client.worker;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+/**
+ * A {@link Worker} whose execution completes asynchronously, e.g. when a non-blocking call to
+ * another service returns.
+ *
+ * <p>The task runner does not hold a thread while the returned future is pending: the concurrency
+ * permit of the task is released and the result is sent to the server when the future completes.
+ * A future completed exceptionally fails the task, the same way an exception thrown by {@link
+ * Worker#execute(Task)} does.
+ */
+public interface AsyncWorker extends Worker {
+
+    /**
+     * Starts the execution of a task.
+     *
+     * @param task Task to be executed.
+     * @return a future completed with the {@link TaskResult}. If the task is not completed yet,
+     *     complete it with the status as IN_PROGRESS.
+     */
+    CompletableFuture<TaskResult> executeAsync(Task task);
+
+    /** Blocks until {@link #executeAsync(Task)} completes, for callers that need a result. */
+    @Override
+    default TaskResult execute(Task task) {
+        return executeAsync(task).join();
+    }
+}
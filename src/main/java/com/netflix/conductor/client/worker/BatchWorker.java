@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.client.worker;
+
+import java.util.List;
+
+import com.netflix.conductor.client.config.PropertyFactory;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+/**
+ * A {@link Worker} that executes several tasks in one call, e.g. to write them to a database or
+ * send them to a bulk API in a single round trip.
+ *
+ * <p>The task runner groups the polled tasks into batches of at most {@link #getBatchSize()}
+ * tasks. A batch smaller than that waits up to {@link #getBatchLingerMillis()} for more tasks
+ * before it is executed. The result of each task is sent to the server separately.
+ */
+public interface BatchWorker extends Worker {
+
+    /**
+     * Executes a batch of tasks.
+     *
+     * @param tasks Tasks to be executed.
+     * @return a {@link TaskResult} for each task, in any order. Results are matched to the tasks
+     *     by task id, a task without a result is failed. If the whole batch fails, throw an
+     *     exception to fail all of its tasks.
+     */
+    List<TaskResult> execute(List<Task> tasks);
+
+    /** Executes a batch with a single task, for callers that handle tasks one at a time. */
+    @Override
+    default TaskResult execute(Task task) {
+        List<TaskResult> results = execute(List.of(task));
+        return results.stream()
+                .filter(result -> task.getTaskId().equals(result.getTaskId()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No result for task " + task.getTaskId()));
+    }
+
+    /**
+     * Override this method to change the maximum number of tasks executed in one call.
+     *
+     * @return maximum number of tasks in a batch
+     */
+    default int getBatchSize() {
+        return PropertyFactory.getInteger(getTaskDefName(), "batchSize", 50);
+    }
+
+    /**
+     * Override this method to wait for more tasks before executing a batch that is not full.
+     *
+     * @return time in milliseconds a batch that is not full waits for more tasks, 0 to execute
+     *     the tasks of each poll right away
+     */
+    default int getBatchLingerMillis() {
+        return PropertyFactory.getInteger(getTaskDefName(), "batchLingerMillis", 0);
+    }
+}
@@ -50,6 +50,7 @@ import org.threeten.bp.format.DateTimeFormatter;
 
 import com.netflix.conductor.common.validation.ErrorResponse;
 
+import io.orkes.conductor.client.grpc.GrpcTransport;
 import io.orkes.conductor.client.http.*;
 import io.orkes.conductor.client.http.api.TokenResourceApi;
 import io.orkes.conductor.client.http.auth.ApiKeyAuth;
@@ -93,6 +94,8 @@ public class ApiClient {
 
     private int executorThreadCount = 0;
 
+    private GrpcTransport grpcTransport = GrpcTransport.AUTO;
+
     private long tokenRefreshInSeconds = 2700;  //45 minutes
 
     private ScheduledExecutorService tokenRefreshService;
@@ -203,6 +206,21 @@ public class ApiClient {
         this.executorThreadCount = executorThreadCount;
     }
 
+    public GrpcTransport getGrpcTransport() {
+        return grpcTransport;
+    }
+
+    /**
+     * Used for GRPC
+     *
+     * @param grpcTransport network transport of the gRPC channels, defaults to {@link
+     *     GrpcTransport#AUTO} which uses epoll when netty-transport-native-epoll is on the
+     *     classpath and available
+     */
+    public void setGrpcTransport(GrpcTransport grpcTransport) {
+        this.grpcTransport = grpcTransport;
+    }
+
     /**
      * Get HTTP client
      *
@@ -472,6 +490,23 @@ public class ApiClient {
         return this;
     }
 
+    /**
+     * Compresses request bodies of at least {@code thresholdBytes} bytes with gzip, e.g. large task
+     * updates and workflow inputs. The server must accept gzip encoded requests. A negative value
+     * turns compression off, which is the default. Responses are always requested with gzip and
+     * decompressed by the http client.
+     *
+     * @param thresholdBytes smallest body that is compressed, in bytes
+     * @return Api client
+     */
+    public ApiClient setRequestCompressionThreshold(int thresholdBytes) {
+        httpClient.interceptors().removeIf(interceptor -> interceptor instanceof GzipRequestInterceptor);
+        if (thresholdBytes >= 0) {
+            httpClient.interceptors().add(new GzipRequestInterceptor(thresholdBytes));
+        }
+        return this;
+    }
+
     /**
      * Format the given parameter object into string.
      *
@@ -48,6 +48,10 @@ public class OrkesClients {
         return new OrkesSecretClient(apiClient);
     }
 
+    /**
+     * @return a new task client, each caller owns and closes its own. The gRPC channels behind
+     *     the clients are shared, so creating one is cheap
+     */
     public TaskClient getTaskClient() {
         return new OrkesTaskClient(apiClient);
     }
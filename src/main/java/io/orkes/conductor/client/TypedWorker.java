@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.config.ObjectMapperProvider;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * A {@link Worker} that receives the task input as an object of type {@code I} and returns its
+ * output as an object of type {@code O}.
+ *
+ * <p>The input is bound from the task input map with an {@link ObjectReader} cached per type, and
+ * the output is turned into the task output the same way. An input that cannot be bound fails the
+ * task with a terminal error, since retrying it would not help.
+ *
+ * @param <I> type of the task input
+ * @param <O> type of the task output, a {@link Map} is used as is and a value that is not an
+ *     object is returned under the {@code result} key
+ */
+public class TypedWorker<I, O> implements Worker {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapperProvider().getObjectMapper();
+
+    private static final ObjectWriter WRITER = OBJECT_MAPPER.writer();
+
+    private static final ObjectReader MAP_READER = OBJECT_MAPPER.readerFor(new TypeReference<Map<String, Object>>() {});
+
+    private static final ObjectReader VALUE_READER = OBJECT_MAPPER.readerFor(Object.class);
+
+    private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    private final String taskDefName;
+
+    private final Class<I> inputType;
+
+    private final ObjectReader inputReader;
+
+    private final Function<I, O> function;
+
+    public TypedWorker(String taskDefName, Class<I> inputType, Function<I, O> function) {
+        this.taskDefName = taskDefName;
+        this.inputType = inputType;
+        this.inputReader = READERS.computeIfAbsent(inputType, OBJECT_MAPPER::readerFor);
+        this.function = function;
+    }
+
+    @Override
+    public String getTaskDefName() {
+        return taskDefName;
+    }
+
+    @Override
+    public TaskResult execute(Task task) {
+        I input;
+        try {
+            input = bindInput(task.getInputData());
+        } catch (IOException | IllegalArgumentException e) {
+            TaskResult result = new TaskResult(task);
+            result.setStatus(TaskResult.Status.FAILED_WITH_TERMINAL_ERROR);
+            result.setReasonForIncompletion(
+                    "Unable to bind the input to " + inputType.getSimpleName() + ": " + e.getMessage());
+            return result;
+        }
+        O output = function.apply(input);
+        TaskResult result = new TaskResult(task);
+        result.setStatus(TaskResult.Status.COMPLETED);
+        if (output != null) {
+            try {
+                result.setOutputData(toOutputData(output));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to serialize the output of task " + task.getTaskId(), e);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private I bindInput(Map<String, Object> inputData) throws IOException {
+        if (inputType.isInstance(inputData)) {
+            return (I) inputData;
+        }
+        TokenBuffer buffer = new TokenBuffer(OBJECT_MAPPER, false);
+        WRITER.writeValue(buffer, inputData);
+        return inputReader.readValue(buffer.asParser());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toOutputData(Object output) throws IOException {
+        if (output instanceof Map) {
+            return (Map<String, Object>) output;
+        }
+        TokenBuffer buffer = new TokenBuffer(OBJECT_MAPPER, false);
+        WRITER.writeValue(buffer, output);
+        if (buffer.firstToken() == JsonToken.START_OBJECT) {
+            return MAP_READER.readValue(buffer.asParser());
+        }
+        // Values that are not objects, e.g. a string or a list, are returned under "result"
+        Map<String, Object> outputData = new HashMap<>();
+        outputData.put("result", VALUE_READER.readValue(buffer.asParser()));
+        return outputData;
+    }
+}
@@ -14,6 +14,7 @@ package io.orkes.conductor.client;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +58,23 @@ public class Workers {
         return this;
     }
 
+    /**
+     * Registers a worker that receives the task input bound to {@code inputType} and whose return
+     * value becomes the task output.
+     *
+     * @see TypedWorker
+     */
+    public <I, O> Workers register(String name, Class<I> inputType, Function<I, O> function) {
+        workers.add(
+                new TypedWorker<>(name, inputType, function) {
+                    @Override
+                    public int getPollingInterval() {
+                        return 100;
+                    }
+                });
+        return this;
+    }
+
     public Workers rootUri(String rootUri) {
         this.rootUri = rootUri;
         return this;
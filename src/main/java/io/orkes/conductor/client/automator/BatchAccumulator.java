@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.netflix.conductor.common.metadata.tasks.Task;
+
+/**
+ * Groups the tasks of a {@link com.netflix.conductor.client.worker.BatchWorker} into batches. A
+ * batch is ready once it holds {@code maxBatchSize} tasks or once its first task has waited
+ * {@code lingerMillis}.
+ */
+class BatchAccumulator {
+
+    private final int maxBatchSize;
+
+    private final long lingerMillis;
+
+    private List<Task> pending = new ArrayList<>();
+
+    private long firstAddedAt;
+
+    BatchAccumulator(int maxBatchSize, long lingerMillis) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMillis = Math.max(0, lingerMillis);
+    }
+
+    /**
+     * @return the batch completed by this task, null if it is not full yet
+     */
+    synchronized List<Task> add(Task task) {
+        if (pending.isEmpty()) {
+            firstAddedAt = System.currentTimeMillis();
+        }
+        pending.add(task);
+        return pending.size() >= maxBatchSize ? take() : null;
+    }
+
+    /**
+     * @param force take the pending tasks even if the linger time has not elapsed
+     * @return the pending tasks if the batch is ready, an empty list otherwise
+     */
+    synchronized List<Task> takeDue(boolean force) {
+        if (pending.isEmpty() || (!force && millisUntilDue() > 0)) {
+            return Collections.emptyList();
+        }
+        return take();
+    }
+
+    /**
+     * @return time in milliseconds before the pending tasks are due, -1 if there are none
+     */
+    synchronized long millisUntilDue() {
+        if (pending.isEmpty()) {
+            return -1;
+        }
+        return Math.max(0, firstAddedAt + lingerMillis - System.currentTimeMillis());
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    private List<Task> take() {
+        List<Task> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+}
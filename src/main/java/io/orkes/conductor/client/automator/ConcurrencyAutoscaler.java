@@ -0,0 +1,231 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.client.telemetry.MetricsContainer;
+
+import io.orkes.conductor.client.TaskClient;
+
+/**
+ * Adjusts the number of tasks each {@link TaskRunner} executes concurrently, within configured
+ * bounds.
+ *
+ * <p>Every interval, the backlog of each task type is read from the server and the average
+ * execution time since the previous sample is compared with the lowest recently observed one. The
+ * limit follows an additive increase / multiplicative decrease scheme:
+ *
+ * <ul>
+ *   <li>execution time degraded: the workers (or whatever they call) are saturated, the limit is
+ *       cut by {@link #DECREASE_FACTOR}
+ *   <li>tasks waiting in the queue and the runner is using its permits: the limit is increased by
+ *       a fixed step
+ *   <li>queue empty and most permits unused: the limit is lowered by a fixed step
+ * </ul>
+ *
+ * Each decision is counted in the {@code task_concurrency_resize} metric tagged with the decision,
+ * and the resulting limit is published as the {@code task_concurrency_limit} gauge.
+ */
+class ConcurrencyAutoscaler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyAutoscaler.class);
+
+    static final String INCREASE = "increase";
+    static final String LATENCY_DECREASE = "latency_decrease";
+    static final String IDLE_DECREASE = "idle_decrease";
+    static final String HOLD = "hold";
+
+    static final double DECREASE_FACTOR = 0.75;
+
+    /** Execution time this many times the baseline is considered degraded */
+    static final double LATENCY_TOLERANCE = 2.0;
+
+    /** Portion of the permits that must be in use before the limit is increased */
+    static final double SATURATION = 0.8;
+
+    /** The baseline drifts up by this ratio every sample so that it follows a lasting change */
+    private static final double BASELINE_DRIFT = 0.05;
+
+    private static final double SMOOTHING = 0.3;
+
+    private final TaskClient taskClient;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final List<ScaledRunner> runners = new CopyOnWriteArrayList<>();
+
+    ConcurrencyAutoscaler(TaskClient taskClient, int intervalSeconds) {
+        this.taskClient = taskClient;
+        this.scheduler =
+                Executors.newSingleThreadScheduledExecutor(
+                        new BasicThreadFactory.Builder()
+                                .namingPattern("task-concurrency-autoscaler-%d")
+                                .daemon(true)
+                                .build());
+        this.scheduler.scheduleWithFixedDelay(
+                this::adjustAll, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    void register(TaskRunner taskRunner, int minConcurrency, int maxConcurrency) {
+        Controller controller = new Controller(minConcurrency, maxConcurrency);
+        int initial = controller.clamp(taskRunner.getConcurrencyLimit());
+        taskRunner.resize(initial);
+        MetricsContainer.recordTaskConcurrencyLimit(taskRunner.getTaskType(), initial);
+        runners.add(new ScaledRunner(taskRunner, controller));
+        LOGGER.info(
+                "Autoscaling concurrency for taskType {} between {} and {}, starting at {}",
+                taskRunner.getTaskType(),
+                minConcurrency,
+                maxConcurrency,
+                initial);
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void adjustAll() {
+        for (ScaledRunner runner : runners) {
+            try {
+                adjust(runner);
+            } catch (Throwable t) {
+                LOGGER.warn(
+                        "Unable to adjust concurrency for taskType {}: {}",
+                        runner.taskRunner.getTaskType(),
+                        t.getMessage());
+            }
+        }
+    }
+
+    private void adjust(ScaledRunner runner) {
+        TaskRunner taskRunner = runner.taskRunner;
+        String taskType = taskRunner.getTaskType();
+        long backlog = taskClient.getQueueSizeForTask(taskType);
+        MetricsContainer.recordTaskQueueBacklog(taskType, backlog);
+
+        int limit = taskRunner.getConcurrencyLimit();
+        int newLimit =
+                runner.controller.next(
+                        limit,
+                        taskRunner.getInFlightCount(),
+                        backlog,
+                        taskRunner.sampleAverageExecutionTime());
+        String decision = runner.controller.getLastDecision();
+        if (newLimit != limit) {
+            // Only actual changes are counted, holding the limit is what most intervals decide
+            MetricsContainer.incrementTaskConcurrencyResizeCount(taskType, decision);
+            LOGGER.debug(
+                    "{}: concurrency for taskType {} {} -> {} (backlog {})",
+                    decision,
+                    taskType,
+                    limit,
+                    newLimit,
+                    backlog);
+            taskRunner.resize(newLimit);
+        }
+        MetricsContainer.recordTaskConcurrencyLimit(taskType, newLimit);
+    }
+
+    private static class ScaledRunner {
+
+        private final TaskRunner taskRunner;
+
+        private final Controller controller;
+
+        private ScaledRunner(TaskRunner taskRunner, Controller controller) {
+            this.taskRunner = taskRunner;
+            this.controller = controller;
+        }
+    }
+
+    /** The AIMD decision for a single task type, kept separate from the sampling for testing. */
+    static class Controller {
+
+        private final int minConcurrency;
+
+        private final int maxConcurrency;
+
+        private final int step;
+
+        private double latency = -1;
+
+        private double baseline = -1;
+
+        private String lastDecision = HOLD;
+
+        Controller(int minConcurrency, int maxConcurrency) {
+            if (minConcurrency < 1 || maxConcurrency < minConcurrency) {
+                throw new IllegalArgumentException(
+                        "Invalid concurrency bounds: [" + minConcurrency + ", " + maxConcurrency + "]");
+            }
+            this.minConcurrency = minConcurrency;
+            this.maxConcurrency = maxConcurrency;
+            this.step = Math.max(1, (maxConcurrency - minConcurrency) / 10);
+        }
+
+        /**
+         * @param limit current concurrency limit
+         * @param inFlight number of tasks currently executing
+         * @param backlog number of tasks waiting in the server queue
+         * @param averageExecutionMillis average execution time since the previous sample, -1 if
+         *     unknown
+         * @return the new concurrency limit
+         */
+        int next(int limit, int inFlight, long backlog, double averageExecutionMillis) {
+            boolean degraded = false;
+            if (averageExecutionMillis >= 0) {
+                latency =
+                        latency < 0
+                                ? averageExecutionMillis
+                                : SMOOTHING * averageExecutionMillis + (1 - SMOOTHING) * latency;
+                degraded = baseline > 0 && latency > baseline * LATENCY_TOLERANCE;
+                baseline = baseline < 0 ? latency : Math.min(latency, baseline * (1 + BASELINE_DRIFT));
+            }
+            int newLimit;
+            if (degraded && limit > minConcurrency) {
+                newLimit = (int) (limit * DECREASE_FACTOR);
+                lastDecision = LATENCY_DECREASE;
+            } else if (!degraded && backlog > 0 && inFlight >= limit * SATURATION) {
+                newLimit = limit + (int) Math.min(step, backlog);
+                lastDecision = INCREASE;
+            } else if (backlog == 0 && inFlight < limit / 2) {
+                newLimit = Math.max(inFlight, limit - step);
+                lastDecision = IDLE_DECREASE;
+            } else {
+                newLimit = limit;
+            }
+            newLimit = clamp(newLimit);
+            if (newLimit == limit) {
+                lastDecision = HOLD;
+            }
+            return newLimit;
+        }
+
+        int clamp(int limit) {
+            return Math.max(minConcurrency, Math.min(maxConcurrency, limit));
+        }
+
+        String getLastDecision() {
+            return lastDecision;
+        }
+    }
+}
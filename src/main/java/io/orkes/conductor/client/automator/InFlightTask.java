@@ -0,0 +1,131 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import com.netflix.conductor.common.metadata.tasks.Task;
+
+/**
+ * A task being executed by a worker of this process.
+ *
+ * @see TaskRunnerConfigurer#getInFlightTasks()
+ */
+public class InFlightTask {
+
+    private final String taskId;
+
+    private final String taskType;
+
+    private final String workflowInstanceId;
+
+    private final long responseTimeoutSeconds;
+
+    private final long startTime;
+
+    private final Thread thread;
+
+    private final String workerId;
+
+    private volatile boolean stuck;
+
+    private volatile long leaseStart;
+
+    InFlightTask(Task task, String taskType, Thread thread, String workerId, long startTime) {
+        this.taskId = task.getTaskId();
+        this.taskType = taskType;
+        this.workflowInstanceId = task.getWorkflowInstanceId();
+        this.responseTimeoutSeconds = task.getResponseTimeoutSeconds();
+        this.thread = thread;
+        this.workerId = workerId;
+        this.startTime = startTime;
+        // The lease started when the task was polled, which the server records as the start time
+        this.leaseStart = task.getStartTime() > 0 ? Math.min(startTime, task.getStartTime()) : startTime;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public String getTaskType() {
+        return taskType;
+    }
+
+    public String getWorkflowInstanceId() {
+        return workflowInstanceId;
+    }
+
+    /**
+     * @return response timeout of the task, 0 if it has none
+     */
+    public long getResponseTimeoutSeconds() {
+        return responseTimeoutSeconds;
+    }
+
+    /**
+     * @return time in milliseconds since the epoch when the execution started
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return milliseconds since the execution started
+     */
+    public long getAgeMillis() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * @return thread executing the task, or null for an {@link
+     *     com.netflix.conductor.client.worker.AsyncWorker} which does not hold a thread
+     */
+    public Thread getThread() {
+        return thread;
+    }
+
+    /**
+     * @return true if the task was reported as stuck by the watchdog
+     */
+    public boolean isStuck() {
+        return stuck;
+    }
+
+    void setStuck(boolean stuck) {
+        this.stuck = stuck;
+    }
+
+    String getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * @return time in milliseconds since the epoch when the lease of the task last started, when
+     *     it was polled or last extended
+     */
+    long getLeaseStart() {
+        return leaseStart;
+    }
+
+    void setLeaseStart(long leaseStart) {
+        this.leaseStart = leaseStart;
+    }
+
+    @Override
+    public String toString() {
+        return "InFlightTask{taskId=" + taskId
+                + ", taskType=" + taskType
+                + ", workflowInstanceId=" + workflowInstanceId
+                + ", ageMillis=" + getAgeMillis()
+                + ", thread=" + (thread == null ? null : thread.getName())
+                + "}";
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.netflix.conductor.common.metadata.tasks.Task;
+
+/**
+ * Tasks being executed by a {@link TaskRunner}, read by the {@link StuckTaskWatchdog} and the
+ * {@link LeaseExtender}.
+ */
+class InFlightTaskRegistry {
+
+    private final String taskType;
+
+    private final String workerId;
+
+    private final Map<String /* taskId */, InFlightTask> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * @param workerId identity of the worker executing the tasks
+     */
+    InFlightTaskRegistry(String taskType, String workerId) {
+        this.taskType = taskType;
+        this.workerId = workerId;
+    }
+
+    /**
+     * @param thread thread executing the task, null if the execution does not hold one
+     */
+    void add(Task task, Thread thread) {
+        tasks.put(task.getTaskId(), new InFlightTask(task, taskType, thread, workerId, System.currentTimeMillis()));
+    }
+
+    void remove(Task task) {
+        tasks.remove(task.getTaskId());
+    }
+
+    int size() {
+        return tasks.size();
+    }
+
+    /**
+     * @return live view of the tasks, weakly consistent with the executions
+     */
+    Collection<InFlightTask> getTasks() {
+        return Collections.unmodifiableCollection(tasks.values());
+    }
+
+    /**
+     * @return milliseconds since the oldest execution started, 0 if there is none
+     */
+    long getOldestAgeMillis() {
+        long oldestStart = Long.MAX_VALUE;
+        for (InFlightTask task : tasks.values()) {
+            oldestStart = Math.min(oldestStart, task.getStartTime());
+        }
+        return oldestStart == Long.MAX_VALUE ? 0 : Math.max(0, System.currentTimeMillis() - oldestStart);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.client.telemetry.MetricsContainer;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+/**
+ * Extends the lease of tasks that are still executing when they get close to their {@code
+ * responseTimeoutSeconds}, so that workers do not have to send heartbeats themselves.
+ *
+ * <p>Executing tasks are read from the {@link InFlightTaskRegistry} of each registered runner. A
+ * single thread checks them every {@link #CHECK_INTERVAL_MILLIS} and sends an {@code extendLease}
+ * update for each task with a response timeout that reached {@link #EXTEND_AT_RATIO} of it since
+ * it was polled or last extended. Tasks that complete before that point never cause an update.
+ */
+class LeaseExtender {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeaseExtender.class);
+
+    static final long CHECK_INTERVAL_MILLIS = 1000;
+
+    static final double EXTEND_AT_RATIO = 0.8;
+
+    private final Function<TaskResult, CompletableFuture<Void>> sender;
+
+    private final List<InFlightTaskRegistry> registries = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    LeaseExtender(Function<TaskResult, CompletableFuture<Void>> sender) {
+        this.sender = sender;
+        this.scheduler =
+                Executors.newSingleThreadScheduledExecutor(
+                        new BasicThreadFactory.Builder()
+                                .namingPattern("task-lease-extender-%d")
+                                .daemon(true)
+                                .build());
+        this.scheduler.scheduleWithFixedDelay(
+                this::extendDueLeases, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Extends the leases of the tasks of this registry from now on.
+     */
+    void register(InFlightTaskRegistry registry) {
+        registries.add(registry);
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+        registries.clear();
+    }
+
+    /** Sends the extensions that are due, visible for testing. */
+    void extendDueLeases() {
+        long now = System.currentTimeMillis();
+        for (InFlightTaskRegistry registry : registries) {
+            for (InFlightTask inFlightTask : registry.getTasks()) {
+                long timeoutMillis = TimeUnit.SECONDS.toMillis(inFlightTask.getResponseTimeoutSeconds());
+                if (timeoutMillis <= 0 || now < inFlightTask.getLeaseStart() + extendAfterMillis(timeoutMillis)) {
+                    continue;
+                }
+                long previousLeaseStart = inFlightTask.getLeaseStart();
+                inFlightTask.setLeaseStart(now);
+                extend(inFlightTask, previousLeaseStart);
+            }
+        }
+    }
+
+    private static long extendAfterMillis(long timeoutMillis) {
+        // Leave at least two checks before the timeout for short timeouts
+        return Math.max(
+                0,
+                Math.min(
+                        (long) (timeoutMillis * EXTEND_AT_RATIO),
+                        timeoutMillis - 2 * CHECK_INTERVAL_MILLIS));
+    }
+
+    private void extend(InFlightTask inFlightTask, long previousLeaseStart) {
+        TaskResult result = new TaskResult();
+        result.setTaskId(inFlightTask.getTaskId());
+        result.setWorkflowInstanceId(inFlightTask.getWorkflowInstanceId());
+        result.setWorkerId(inFlightTask.getWorkerId());
+        result.setStatus(TaskResult.Status.IN_PROGRESS);
+        result.setExtendLease(true);
+        String taskType = inFlightTask.getTaskType();
+        LOGGER.debug("Extending the lease of task {} of type {}", inFlightTask.getTaskId(), taskType);
+        CompletableFuture<Void> future;
+        try {
+            future = sender.apply(result);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete(
+                (ignored, error) -> {
+                    if (error == null) {
+                        MetricsContainer.incrementTaskLeaseExtendCount(taskType);
+                        return;
+                    }
+                    // Retried at the next check
+                    inFlightTask.setLeaseStart(previousLeaseStart);
+                    MetricsContainer.incrementTaskLeaseExtendErrorCount(taskType, error);
+                    LOGGER.warn("Unable to extend the lease of task {}: {}", inFlightTask.getTaskId(), error.getMessage());
+                });
+    }
+}
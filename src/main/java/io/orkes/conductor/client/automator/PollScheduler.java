@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides when a {@link TaskRunner} polls next.
+ *
+ * <ul>
+ *   <li>When all permits are in use, the runner waits until a permit is released, at which point
+ *       the wake-up listener is invoked, instead of sleeping for a fixed interval.
+ *   <li>When a poll comes back empty, the next poll is delayed using exponential backoff with
+ *       jitter, capped at the max idle delay. Once the backoff reaches the polling interval the
+ *       delay is never below it, so an idle runner polls less often than with a fixed interval.
+ *       The first non-empty poll resets the backoff.
+ * </ul>
+ */
+class PollScheduler {
+
+    static final long MIN_BACKOFF_MILLIS = 1;
+
+    private volatile long pollingIntervalMillis;
+
+    private volatile long maxBackoffMillis;
+
+    private final AtomicBoolean waitingForPermits = new AtomicBoolean(false);
+
+    private volatile Runnable wakeUpListener = () -> {};
+
+    private int emptyPollCount = 0;
+
+    PollScheduler(long pollingIntervalInMillis, long maxIdleDelayInMillis) {
+        setIntervals(pollingIntervalInMillis, maxIdleDelayInMillis);
+    }
+
+    /**
+     * Updated when the configuration of the worker changes.
+     *
+     * @param pollingIntervalInMillis lower bound of the delay once backed off
+     * @param maxIdleDelayInMillis upper bound of the backoff, raised to the polling interval if
+     *     below it
+     */
+    void setIntervals(long pollingIntervalInMillis, long maxIdleDelayInMillis) {
+        this.pollingIntervalMillis = Math.max(MIN_BACKOFF_MILLIS, pollingIntervalInMillis);
+        this.maxBackoffMillis = Math.max(pollingIntervalMillis, maxIdleDelayInMillis);
+    }
+
+    /**
+     * @param wakeUpListener invoked (at most once per wait) when a runner waiting for permits must
+     *     poll again
+     */
+    void setWakeUpListener(Runnable wakeUpListener) {
+        this.wakeUpListener = wakeUpListener;
+    }
+
+    /** Marks the runner as waiting for a permit, see {@link #onPermitsReleased()}. */
+    void waitForPermits() {
+        waitingForPermits.set(true);
+    }
+
+    /**
+     * Called every time a permit is returned, wakes up the runner if it is waiting for one.
+     *
+     * @return true if the runner was waiting and the wake-up listener was invoked
+     */
+    boolean onPermitsReleased() {
+        if (waitingForPermits.compareAndSet(true, false)) {
+            wakeUpListener.run();
+            return true;
+        }
+        return false;
+    }
+
+    boolean isWaitingForPermits() {
+        return waitingForPermits.get();
+    }
+
+    /**
+     * Records an empty poll.
+     *
+     * @return time in milliseconds to wait before polling again
+     */
+    long onEmptyPoll() {
+        if (emptyPollCount < Long.SIZE - 2) {
+            emptyPollCount++;
+        }
+        long backoff = Math.min(maxBackoffMillis, MIN_BACKOFF_MILLIS << emptyPollCount);
+        // Equal jitter: wait at least half of the backoff so that the delay still grows, and at
+        // least the polling interval once the backoff reached it
+        long lowerBound = backoff / 2;
+        if (backoff >= pollingIntervalMillis) {
+            lowerBound = Math.max(lowerBound, pollingIntervalMillis);
+        }
+        return lowerBound + ThreadLocalRandom.current().nextLong(backoff - lowerBound + 1);
+    }
+
+    /** Records a poll that returned tasks, the next empty poll starts the backoff from scratch. */
+    void onTasksReceived() {
+        emptyPollCount = 0;
+    }
+
+    long getPollingIntervalMillis() {
+        return pollingIntervalMillis;
+    }
+}
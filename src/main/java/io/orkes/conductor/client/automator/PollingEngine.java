@@ -0,0 +1,176 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls all the registered {@link TaskRunner}s from a small, fixed number of threads.
+ *
+ * <p>Each runner is scheduled by its next-due time: after a poll the runner tells how long to
+ * wait before the next one (see {@link TaskRunner#pollOnce()}). A runner with no free permits is
+ * not rescheduled until one of its permits is released, with the polling interval as a safety
+ * net. The number of threads does not depend on the number of task types.
+ *
+ * <p>The runners are created with a poll timeout of 0: a poll holds an engine thread for the round
+ * trip only, never for a server side wait, so idle task types cannot starve busy ones.
+ */
+class PollingEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PollingEngine.class);
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private volatile boolean running = true;
+
+    PollingEngine(int threadCount) {
+        this.scheduler =
+                new ScheduledThreadPoolExecutor(
+                        threadCount,
+                        new BasicThreadFactory.Builder()
+                                .namingPattern("task-poller-%d")
+                                .daemon(true)
+                                .build());
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        // Polls already scheduled must not run once the engine is stopped
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        LOGGER.info("Started polling engine with {} threads", threadCount);
+    }
+
+    void register(TaskRunner taskRunner) {
+        RunnerPoll poll = new RunnerPoll(taskRunner);
+        taskRunner.getPollScheduler().setWakeUpListener(poll::wakeUp);
+        schedule(poll, 0);
+        scheduler.scheduleWithFixedDelay(
+                () -> refreshConfig(taskRunner),
+                WorkerConfig.REFRESH_INTERVAL_MILLIS,
+                WorkerConfig.REFRESH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the scheduler backing the engine, shared with other non-blocking pollers
+     */
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /** Stops scheduling polls, polls already in progress are allowed to complete. */
+    void shutdown() {
+        running = false;
+        scheduler.shutdown();
+    }
+
+    /**
+     * Waits for the polls in progress after {@link #shutdown()}.
+     *
+     * @return true if no poll is in progress anymore
+     */
+    boolean awaitTermination(long timeoutMillis) {
+        try {
+            return scheduler.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void refreshConfig(TaskRunner taskRunner) {
+        try {
+            taskRunner.refreshConfig();
+        } catch (Throwable t) {
+            // An exception would cancel the periodic refresh
+            LOGGER.warn("Error refreshing the configuration for {}", taskRunner.getTaskType(), t);
+        }
+    }
+
+    private void schedule(Runnable poll, long delayMillis) {
+        if (!running) {
+            return;
+        }
+        try {
+            if (delayMillis <= 0) {
+                scheduler.execute(poll);
+            } else {
+                scheduler.schedule(poll, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            if (running) {
+                throw e;
+            }
+        }
+    }
+
+    private class RunnerPoll implements Runnable {
+
+        private final TaskRunner taskRunner;
+
+        private volatile ScheduledFuture<?> safetyNet;
+
+        private RunnerPoll(TaskRunner taskRunner) {
+            this.taskRunner = taskRunner;
+        }
+
+        @Override
+        public void run() {
+            if (!running) {
+                return;
+            }
+            long delay;
+            try {
+                delay = taskRunner.pollOnce();
+            } catch (Throwable t) {
+                LOGGER.error("Error polling for {}", taskRunner.getTaskType(), t);
+                delay = taskRunner.getPollScheduler().getPollingIntervalMillis();
+            }
+            if (!running) {
+                return;
+            }
+            if (delay != TaskRunner.WAIT_FOR_PERMITS) {
+                schedule(this, delay);
+                return;
+            }
+            PollScheduler pollScheduler = taskRunner.getPollScheduler();
+            pollScheduler.waitForPermits();
+            try {
+                safetyNet =
+                        scheduler.schedule(
+                                pollScheduler::onPermitsReleased,
+                                pollScheduler.getPollingIntervalMillis(),
+                                TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+            if (taskRunner.hasAvailablePermits()) {
+                // A permit was released before we started waiting
+                pollScheduler.onPermitsReleased();
+            }
+        }
+
+        private void wakeUp() {
+            ScheduledFuture<?> future = safetyNet;
+            if (future != null) {
+                future.cancel(false);
+            }
+            schedule(this, 0);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.client.telemetry.MetricsContainer;
+import com.netflix.conductor.common.metadata.tasks.Task;
+
+/**
+ * Local buffer of tasks polled ahead of free threads, so that a thread finishing a task can start
+ * the next one without waiting for a poll round trip.
+ *
+ * <p>The buffer is topped up to a watermark that adapts to the observed execution time: the last
+ * buffered task must start within half of the task's {@code responseTimeoutSeconds}, given the
+ * number of tasks executing concurrently. Nothing is prefetched until both the execution time and
+ * the response timeout are known, the latter is recorded from every polled task, including the
+ * ones started right away. A task that still waited longer than its response timeout is dropped
+ * and logged, the server times it out and schedules it again.
+ */
+class PrefetchBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchBuffer.class);
+
+    /** Portion of the response timeout a task may spend in the buffer */
+    static final double RESPONSE_TIMEOUT_RATIO = 0.5;
+
+    private static final double SMOOTHING = 0.2;
+
+    private final String taskType;
+
+    private final int maxPrefetchCount;
+
+    private final Queue<PrefetchedTask> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private volatile double averageExecutionMillis = -1;
+
+    private static final long UNKNOWN = -1;
+
+    /** Long.MAX_VALUE for tasks without a response timeout */
+    private volatile long responseTimeoutMillis = UNKNOWN;
+
+    PrefetchBuffer(String taskType, int maxPrefetchCount) {
+        this.taskType = taskType;
+        this.maxPrefetchCount = maxPrefetchCount;
+    }
+
+    /**
+     * @param concurrency number of tasks executed concurrently
+     * @return number of tasks the buffer should hold
+     */
+    int getWatermark(int concurrency) {
+        double executionMillis = averageExecutionMillis;
+        if (executionMillis < 0 || concurrency < 1) {
+            return 0;
+        }
+        long timeoutMillis = responseTimeoutMillis;
+        if (timeoutMillis == UNKNOWN) {
+            return 0;
+        }
+        if (timeoutMillis == Long.MAX_VALUE) {
+            return maxPrefetchCount;
+        }
+        // Buffered tasks start at a rate of concurrency / executionMillis
+        double maxWaitMillis = timeoutMillis * RESPONSE_TIMEOUT_RATIO;
+        double fits = maxWaitMillis * concurrency / Math.max(1, executionMillis);
+        return (int) Math.min(maxPrefetchCount, fits);
+    }
+
+    /**
+     * @return number of tasks to poll to reach the watermark
+     */
+    int getRoom(int concurrency) {
+        return Math.max(0, getWatermark(concurrency) - size.get());
+    }
+
+    /** Feeds the watermark, called for every polled task whether it is buffered or not. */
+    void recordResponseTimeout(Task task) {
+        long responseTimeoutSeconds = task.getResponseTimeoutSeconds();
+        responseTimeoutMillis = responseTimeoutSeconds > 0 ? TimeUnit.SECONDS.toMillis(responseTimeoutSeconds) : Long.MAX_VALUE;
+    }
+
+    void add(Task task) {
+        recordResponseTimeout(task);
+        queue.add(new PrefetchedTask(task, System.nanoTime()));
+        size.incrementAndGet();
+    }
+
+    /**
+     * @return the oldest buffered task that can still be executed, null if there is none
+     */
+    Task poll() {
+        PrefetchedTask prefetched;
+        while ((prefetched = queue.poll()) != null) {
+            size.decrementAndGet();
+            long waitedNanos = System.nanoTime() - prefetched.bufferedAtNanos;
+            MetricsContainer.getPrefetchWaitTimer(taskType).record(waitedNanos, TimeUnit.NANOSECONDS);
+            long timeoutSeconds = prefetched.task.getResponseTimeoutSeconds();
+            if (timeoutSeconds > 0 && waitedNanos > TimeUnit.SECONDS.toNanos(timeoutSeconds)) {
+                MetricsContainer.incrementPrefetchExpiredCount(taskType);
+                LOGGER.warn(
+                        "Dropping task {} of type {}, it waited {} ms in the prefetch buffer, more than its response timeout",
+                        prefetched.task.getTaskId(),
+                        taskType,
+                        TimeUnit.NANOSECONDS.toMillis(waitedNanos));
+                continue;
+            }
+            return prefetched.task;
+        }
+        return null;
+    }
+
+    /** Feeds the watermark, the average is approximate when called concurrently. */
+    void recordExecutionTime(long executionMillis) {
+        double average = averageExecutionMillis;
+        averageExecutionMillis =
+                average < 0 ? executionMillis : SMOOTHING * executionMillis + (1 - SMOOTHING) * average;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private static class PrefetchedTask {
+
+        private final Task task;
+
+        private final long bufferedAtNanos;
+
+        private PrefetchedTask(Task task, long bufferedAtNanos) {
+            this.task = task;
+            this.bufferedAtNanos = bufferedAtNanos;
+        }
+    }
+}
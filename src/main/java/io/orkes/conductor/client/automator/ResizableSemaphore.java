@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Semaphore whose total number of permits can be changed while permits are held. Shrinking below
+ * the number of permits in use makes the available permits negative, and new permits are handed
+ * out only once enough of them have been released.
+ */
+class ResizableSemaphore extends Semaphore {
+
+    private int maxPermits;
+
+    ResizableSemaphore(int permits) {
+        super(permits);
+        this.maxPermits = permits;
+    }
+
+    synchronized void resize(int newMaxPermits) {
+        if (newMaxPermits < 0) {
+            throw new IllegalArgumentException("Permits cannot be negative");
+        }
+        int delta = newMaxPermits - maxPermits;
+        if (delta > 0) {
+            release(delta);
+        } else if (delta < 0) {
+            reducePermits(-delta);
+        }
+        maxPermits = newMaxPermits;
+    }
+
+    synchronized int getMaxPermits() {
+        return maxPermits;
+    }
+
+    /**
+     * @return number of permits currently acquired
+     */
+    int getUsedPermits() {
+        return Math.max(0, getMaxPermits() - availablePermits());
+    }
+}
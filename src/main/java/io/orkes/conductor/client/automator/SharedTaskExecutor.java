@@ -0,0 +1,216 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.client.telemetry.MetricsContainer;
+
+/**
+ * Work-stealing pool shared by the workers of all the task types, so that the threads left idle by
+ * one task type execute the backlog of another.
+ *
+ * <p>The threads of the pool are handed out as permits. Each task type is guaranteed its minimum
+ * concurrency: those permits are reserved even while the task type does not use them. The other
+ * permits are shared by the task types that are busy, in proportion to their weight. A task type
+ * that receives no tasks is not busy and leaves its share to the others.
+ */
+class SharedTaskExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedTaskExecutor.class);
+
+    private final ForkJoinPool pool;
+
+    private final int capacity;
+
+    private final List<Share> shares = new ArrayList<>();
+
+    private int reserved;
+
+    private int inUse;
+
+    SharedTaskExecutor(int threadCount, String namePrefix) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("No. of threads cannot be less than 1");
+        }
+        this.capacity = threadCount;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.pool =
+                new ForkJoinPool(
+                        threadCount,
+                        forkJoinPool -> {
+                            ForkJoinWorkerThread thread =
+                                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                            thread.setName(namePrefix.replace("%d", "") + "shared-" + threadIndex.getAndIncrement());
+                            return thread;
+                        },
+                        (thread, error) -> {
+                            MetricsContainer.incrementUncaughtExceptionCount();
+                            LOGGER.error("Uncaught exception. Thread {} will exit now", thread, error);
+                        },
+                        // FIFO order for the tasks submitted from outside the pool
+                        true);
+    }
+
+    /**
+     * @param minConcurrency permits reserved for the task type
+     * @param weight share of the unreserved permits relative to the other busy task types
+     */
+    synchronized Share register(String taskType, int minConcurrency, int weight) {
+        if (minConcurrency < 0 || weight < 1) {
+            throw new IllegalArgumentException(
+                    "Invalid fair share for taskType " + taskType + ": min " + minConcurrency + ", weight " + weight);
+        }
+        if (reserved + minConcurrency > capacity) {
+            throw new IllegalArgumentException(
+                    "The minimum concurrency of all the task types exceeds the " + capacity + " shared threads");
+        }
+        reserved += minConcurrency;
+        Share share = new Share(taskType, minConcurrency, weight);
+        shares.add(share);
+        return share;
+    }
+
+    ExecutorService getExecutorService() {
+        return pool;
+    }
+
+    void shutdown(long timeoutMillis) {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** The permits of one task type in the shared pool. */
+    class Share {
+
+        private final String taskType;
+
+        private final int minConcurrency;
+
+        private final int weight;
+
+        private int inUse;
+
+        private boolean busy;
+
+        private volatile Runnable wakeUpListener = () -> {};
+
+        private Share(String taskType, int minConcurrency, int weight) {
+            this.taskType = taskType;
+            this.minConcurrency = minConcurrency;
+            this.weight = weight;
+        }
+
+        /**
+         * @return number of permits acquired, between 0 and {@code requested}
+         */
+        int tryAcquire(int requested) {
+            synchronized (SharedTaskExecutor.this) {
+                int available = Math.min(getLimit() - inUse, capacity - SharedTaskExecutor.this.inUse - reservedByOthers());
+                int granted = Math.max(0, Math.min(requested, available));
+                inUse += granted;
+                SharedTaskExecutor.this.inUse += granted;
+                return granted;
+            }
+        }
+
+        void release(int count) {
+            if (count <= 0) {
+                return;
+            }
+            List<Share> all;
+            synchronized (SharedTaskExecutor.this) {
+                inUse -= count;
+                SharedTaskExecutor.this.inUse -= count;
+                all = new ArrayList<>(shares);
+            }
+            // A permit released by one task type may be what another one is waiting for
+            for (Share share : all) {
+                share.wakeUpListener.run();
+            }
+        }
+
+        boolean hasRoom() {
+            synchronized (SharedTaskExecutor.this) {
+                return inUse < getLimit() && SharedTaskExecutor.this.inUse + reservedByOthers() < capacity;
+            }
+        }
+
+        /**
+         * @param busy true if the last poll returned tasks
+         */
+        void setBusy(boolean busy) {
+            synchronized (SharedTaskExecutor.this) {
+                this.busy = busy;
+            }
+        }
+
+        ExecutorService getExecutorService() {
+            return pool;
+        }
+
+        void setWakeUpListener(Runnable wakeUpListener) {
+            this.wakeUpListener = wakeUpListener;
+        }
+
+        /**
+         * @return the permits this task type can hold given the task types currently busy
+         */
+        int getLimit() {
+            synchronized (SharedTaskExecutor.this) {
+                int busyWeight = weight;
+                for (Share share : shares) {
+                    if (share != this && share.isBusy()) {
+                        busyWeight += share.weight;
+                    }
+                }
+                int unreserved = capacity - reserved;
+                return minConcurrency + (int) Math.ceil((double) unreserved * weight / busyWeight);
+            }
+        }
+
+        String getTaskType() {
+            return taskType;
+        }
+
+        private boolean isBusy() {
+            return busy || inUse > minConcurrency;
+        }
+
+        private int reservedByOthers() {
+            int total = 0;
+            for (Share share : shares) {
+                if (share != this) {
+                    total += Math.max(0, share.minConcurrency - share.inUse);
+                }
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.client.telemetry.MetricsContainer;
+
+/**
+ * Publishes the {@code task_in_flight} and {@code task_in_flight_oldest_age} gauges of every task
+ * type, and reports the tasks that run past {@code stuckAtRatio} of their {@code
+ * responseTimeoutSeconds}, before they hold their permits long enough to starve the worker.
+ *
+ * <p>A stuck task is reported once, with the stack trace of its thread, and counted in the {@code
+ * task_stuck} metric. Tasks without a response timeout are never reported.
+ */
+class StuckTaskWatchdog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StuckTaskWatchdog.class);
+
+    static final long CHECK_INTERVAL_MILLIS = 5000;
+
+    private final List<TaskRunner> taskRunners;
+
+    private final double stuckAtRatio;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param stuckAtRatio fraction of the response timeout after which a task is reported, 0 to
+     *     only publish the gauges
+     */
+    StuckTaskWatchdog(List<TaskRunner> taskRunners, double stuckAtRatio) {
+        this.taskRunners = taskRunners;
+        this.stuckAtRatio = stuckAtRatio;
+        this.scheduler =
+                Executors.newSingleThreadScheduledExecutor(
+                        new BasicThreadFactory.Builder()
+                                .namingPattern("stuck-task-watchdog-%d")
+                                .daemon(true)
+                                .build());
+        this.scheduler.scheduleWithFixedDelay(
+                this::check, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /** Runs one check, visible for testing. */
+    void check() {
+        for (TaskRunner taskRunner : taskRunners) {
+            try {
+                check(taskRunner);
+            } catch (Exception e) {
+                LOGGER.warn("Unable to check the tasks of type {}: {}", taskRunner.getTaskType(), e.getMessage());
+            }
+        }
+    }
+
+    private void check(TaskRunner taskRunner) {
+        InFlightTaskRegistry registry = taskRunner.getInFlightTaskRegistry();
+        String taskType = taskRunner.getTaskType();
+        MetricsContainer.recordTaskInFlightCount(taskType, registry.size());
+        MetricsContainer.recordTaskInFlightOldestAge(taskType, registry.getOldestAgeMillis());
+        if (stuckAtRatio <= 0) {
+            return;
+        }
+        for (InFlightTask task : registry.getTasks()) {
+            long timeoutMillis = TimeUnit.SECONDS.toMillis(task.getResponseTimeoutSeconds());
+            if (timeoutMillis <= 0 || task.isStuck() || task.getAgeMillis() < timeoutMillis * stuckAtRatio) {
+                continue;
+            }
+            task.setStuck(true);
+            MetricsContainer.incrementTaskStuckCount(taskType);
+            Thread thread = task.getThread();
+            if (thread == null) {
+                LOGGER.warn("Task {} of type {} has been executing for {} ms, its response timeout is {} s",
+                        task.getTaskId(), taskType, task.getAgeMillis(), task.getResponseTimeoutSeconds());
+                continue;
+            }
+            Throwable stackTrace = new Throwable("Stack trace of " + thread.getName());
+            stackTrace.setStackTrace(thread.getStackTrace());
+            LOGGER.warn("Task {} of type {} has been executing for {} ms on thread {}, its response timeout is {} s",
+                    task.getTaskId(), taskType, task.getAgeMillis(), thread.getName(), task.getResponseTimeoutSeconds(), stackTrace);
+        }
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.client.exception.ConductorClientException;
+import com.netflix.conductor.client.telemetry.MetricsContainer;
+import com.netflix.conductor.common.config.ObjectMapperProvider;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Disk backed outbox that keeps task results until the server acknowledges them, so that results
+ * are not lost when the server is unreachable for longer than the update retries.
+ *
+ * <p>Results are appended to a memory-mapped journal before they are sent, and an acknowledgment
+ * record is appended once the server accepted them. Appends wait for the journal to be forced to
+ * disk; forces are batched, at most one every {@code flushIntervalMillis}, so concurrent appends
+ * share the cost of a force. When a sender gives up on a result ({@link #release(long)}), and for
+ * all the results found in the journal at startup, the outbox sends the result again in journal
+ * order every {@code replayIntervalMillis}. A result that fails is skipped until the next replay so
+ * that it does not hold back the others. A result the server rejects (a 4xx status other than 408
+ * or 429, e.g. an unknown task or a payload too large) or that failed {@code maxReplayAttempts}
+ * times is dropped, logged at ERROR and counted in the {@code task_result_dropped} metric. The
+ * journal is rewritten with the unacknowledged results only once most of it is acknowledged.
+ *
+ * <p>Acknowledgments are not forced to disk, so a result can be sent again after a crash, task
+ * updates are expected to be idempotent.
+ */
+class TaskResultOutbox {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskResultOutbox.class);
+
+    static final String JOURNAL_FILE = "task-results.journal";
+
+    private static final String OUTBOX_STAGE = "outbox";
+
+    private static final byte RESULT = 1;
+
+    private static final byte ACK = 2;
+
+    /** type (1) + sequence (8) + payload length (4) */
+    private static final int HEADER_SIZE = 13;
+
+    /** crc32 of the sequence and the payload */
+    private static final int TRAILER_SIZE = 4;
+
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    static final int DEFAULT_MAX_REPLAY_ATTEMPTS = 100;
+
+    private final ObjectMapper objectMapper = new ObjectMapperProvider().getObjectMapper();
+
+    private final Path journalPath;
+
+    private final int capacityBytes;
+
+    private final long flushIntervalMillis;
+
+    private final Function<TaskResult, CompletableFuture<Void>> sender;
+
+    private final int maxReplayAttempts;
+
+    private final ConcurrentSkipListMap<Long /* sequence */, PendingResult> entries = new ConcurrentSkipListMap<>();
+
+    private final Object lock = new Object();
+
+    private final ScheduledExecutorService flusher;
+
+    private final ScheduledExecutorService replayer;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer journal;
+
+    private long lastSequence = 0;
+
+    private long liveBytes = 0;
+
+    private boolean dirty = false;
+
+    private CompletableFuture<Void> nextFlush = new CompletableFuture<>();
+
+    /**
+     * @param directory directory holding the journal, created if needed
+     * @param capacityBytes size of the journal file
+     * @param flushIntervalMillis time between two forces of the journal, 0 to force on every
+     *     append
+     * @param replayIntervalMillis time between two attempts to send released results
+     * @param sender sends a result to the server
+     */
+    TaskResultOutbox(
+            Path directory,
+            int capacityBytes,
+            long flushIntervalMillis,
+            long replayIntervalMillis,
+            Function<TaskResult, CompletableFuture<Void>> sender)
+            throws IOException {
+        this(directory, capacityBytes, flushIntervalMillis, replayIntervalMillis, DEFAULT_MAX_REPLAY_ATTEMPTS, sender);
+    }
+
+    /**
+     * @param maxReplayAttempts attempts to send a released result before it is dropped
+     */
+    TaskResultOutbox(
+            Path directory,
+            int capacityBytes,
+            long flushIntervalMillis,
+            long replayIntervalMillis,
+            int maxReplayAttempts,
+            Function<TaskResult, CompletableFuture<Void>> sender)
+            throws IOException {
+        this.maxReplayAttempts = maxReplayAttempts;
+        this.journalPath = directory.resolve(JOURNAL_FILE);
+        this.capacityBytes = capacityBytes;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.sender = sender;
+        Files.createDirectories(directory);
+        synchronized (lock) {
+            map(journalPath);
+            recover();
+            if (!entries.isEmpty()) {
+                LOGGER.info("Recovered {} unacknowledged task results from {}", entries.size(), journalPath);
+                compact();
+            }
+        }
+        if (flushIntervalMillis > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(daemon("task-result-outbox-flusher-%d"));
+            this.flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+        this.replayer = Executors.newSingleThreadScheduledExecutor(daemon("task-result-outbox-replayer-%d"));
+        this.replayer.scheduleWithFixedDelay(this::replay, replayIntervalMillis, replayIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static BasicThreadFactory daemon(String namingPattern) {
+        return new BasicThreadFactory.Builder().namingPattern(namingPattern).daemon(true).build();
+    }
+
+    /**
+     * Persists the result, returns once it is on disk.
+     *
+     * @return sequence of the result in the outbox, used to acknowledge or release it
+     * @throws IllegalStateException if the journal is full
+     */
+    long append(TaskResult result) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long sequence;
+        CompletableFuture<Void> flushed;
+        synchronized (lock) {
+            sequence = ++lastSequence;
+            int size = write(RESULT, sequence, payload);
+            entries.put(sequence, new PendingResult(result, payload, size));
+            liveBytes += size;
+            if (flushIntervalMillis <= 0) {
+                journal.force();
+                flushed = null;
+            } else {
+                dirty = true;
+                flushed = nextFlush;
+            }
+        }
+        MetricsContainer.recordTaskUpdateQueueDepth(OUTBOX_STAGE, entries.size());
+        if (flushed != null) {
+            try {
+                Uninterruptibles.getUninterruptibly(flushed);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Unable to persist task result " + result.getTaskId(), e.getCause());
+            }
+        }
+        return sequence;
+    }
+
+    /** Removes a result the server accepted. */
+    void acknowledge(long sequence) {
+        synchronized (lock) {
+            PendingResult entry = entries.remove(sequence);
+            if (entry == null) {
+                return;
+            }
+            liveBytes -= entry.size;
+            write(ACK, sequence, NO_PAYLOAD);
+            // Rewrite once at least half of the journal is garbage
+            if (journal.position() > capacityBytes / 2 && liveBytes < journal.position() / 2) {
+                compact();
+            }
+        }
+        MetricsContainer.recordTaskUpdateQueueDepth(OUTBOX_STAGE, entries.size());
+    }
+
+    /** Hands a result over to the outbox, which sends it until the server accepts it. */
+    void release(long sequence) {
+        PendingResult entry = entries.get(sequence);
+        if (entry != null) {
+            entry.replay = true;
+        }
+    }
+
+    /**
+     * @return number of results not acknowledged yet
+     */
+    int getPendingCount() {
+        return entries.size();
+    }
+
+    /** Sends the released results in order, skipping the ones that fail. Visible for testing. */
+    void replay() {
+        for (Map.Entry<Long, PendingResult> pending : entries.entrySet()) {
+            PendingResult entry = pending.getValue();
+            if (!entry.replay) {
+                continue;
+            }
+            try {
+                sender.apply(entry.result).get(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                Throwable cause = unwrap(e);
+                if (!isRetryable(cause)) {
+                    drop(pending.getKey(), entry, "rejected", cause);
+                } else if (++entry.attempts >= maxReplayAttempts) {
+                    drop(pending.getKey(), entry, "attempts_exhausted", cause);
+                } else {
+                    LOGGER.debug("Unable to replay task result {}, will retry later: {}", entry.result.getTaskId(), cause.getMessage());
+                }
+                continue;
+            }
+            LOGGER.debug("Replayed task result {}", entry.result.getTaskId());
+            acknowledge(pending.getKey());
+        }
+    }
+
+    private void drop(long sequence, PendingResult entry, String reason, Throwable cause) {
+        LOGGER.error(
+                "Dropping the result of task {} of workflow {} after {} attempts ({}): {}",
+                entry.result.getTaskId(),
+                entry.result.getWorkflowInstanceId(),
+                entry.attempts + 1,
+                reason,
+                cause.getMessage());
+        MetricsContainer.incrementTaskResultDroppedCount(reason);
+        acknowledge(sequence);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * @return false if the server rejected the result itself, sending it again cannot succeed
+     */
+    static boolean isRetryable(Throwable error) {
+        if (error instanceof ConductorClientException) {
+            int status = ((ConductorClientException) error).getStatus();
+            return status < 400 || status >= 500 || status == 408 || status == 429;
+        }
+        return true;
+    }
+
+    void shutdown() {
+        replayer.shutdownNow();
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        synchronized (lock) {
+            journal.force();
+            completeFlush();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close {}: {}", journalPath, e.getMessage());
+            }
+        }
+    }
+
+    private void flush() {
+        MappedByteBuffer toForce;
+        CompletableFuture<Void> flushed;
+        synchronized (lock) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            toForce = journal;
+            flushed = nextFlush;
+            nextFlush = new CompletableFuture<>();
+        }
+        try {
+            toForce.force();
+            flushed.complete(null);
+        } catch (Exception e) {
+            LOGGER.error("Unable to force {}", journalPath, e);
+            flushed.completeExceptionally(e);
+        }
+    }
+
+    private void completeFlush() {
+        dirty = false;
+        nextFlush.complete(null);
+        nextFlush = new CompletableFuture<>();
+    }
+
+    private int write(byte type, long sequence, byte[] payload) {
+        int size = HEADER_SIZE + payload.length + TRAILER_SIZE;
+        if (journal.remaining() < size) {
+            compact();
+            if (journal.remaining() < size) {
+                throw new IllegalStateException("Task result outbox " + journalPath + " is full");
+            }
+        }
+        journal.put(type).putLong(sequence).putInt(payload.length).put(payload).putInt(checksum(sequence, payload));
+        return size;
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < Long.BYTES; i++) {
+            crc.update((int) (sequence >>> (8 * i)));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /** Reads the journal, stops at the first incomplete or corrupted record. */
+    private void recover() {
+        while (journal.remaining() >= HEADER_SIZE + TRAILER_SIZE) {
+            int start = journal.position();
+            byte type = journal.get();
+            long sequence = journal.getLong();
+            int length = journal.getInt();
+            if ((type != RESULT && type != ACK) || length < 0 || journal.remaining() < length + TRAILER_SIZE) {
+                journal.position(start);
+                break;
+            }
+            byte[] payload = new byte[length];
+            journal.get(payload);
+            if (journal.getInt() != checksum(sequence, payload)) {
+                LOGGER.warn("Ignoring corrupted record at offset {} of {}", start, journalPath);
+                journal.position(start);
+                break;
+            }
+            lastSequence = Math.max(lastSequence, sequence);
+            if (type == RESULT) {
+                try {
+                    PendingResult entry = new PendingResult(objectMapper.readValue(payload, TaskResult.class), payload, journal.position() - start);
+                    entry.replay = true;
+                    entries.put(sequence, entry);
+                    liveBytes += entry.size;
+                } catch (IOException e) {
+                    LOGGER.warn("Ignoring unreadable task result at offset {} of {}", start, journalPath, e);
+                }
+            } else {
+                PendingResult entry = entries.remove(sequence);
+                if (entry != null) {
+                    liveBytes -= entry.size;
+                }
+            }
+        }
+    }
+
+    /** Rewrites the journal with the unacknowledged results only. */
+    private void compact() {
+        Path compacted = journalPath.resolveSibling(JOURNAL_FILE + ".compact");
+        try {
+            Files.deleteIfExists(compacted);
+            try (FileChannel compactedChannel =
+                    FileChannel.open(compacted, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = compactedChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacityBytes);
+                for (Map.Entry<Long, PendingResult> pending : entries.entrySet()) {
+                    byte[] payload = pending.getValue().payload;
+                    buffer.put(RESULT).putLong(pending.getKey()).putInt(payload.length).put(payload).putInt(checksum(pending.getKey(), payload));
+                }
+                buffer.force();
+            }
+            channel.close();
+            Files.move(compacted, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            map(journalPath);
+            journal.position((int) liveBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to compact " + journalPath, e);
+        }
+        // Everything appended so far was forced with the new journal
+        completeFlush();
+        LOGGER.debug("Compacted {}, {} results pending", journalPath, entries.size());
+    }
+
+    private void map(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacityBytes);
+    }
+
+    private static class PendingResult {
+
+        private final TaskResult result;
+
+        private final byte[] payload;
+
+        private final int size;
+
+        private volatile boolean replay = false;
+
+        /** Only updated by the replay thread */
+        private int attempts = 0;
+
+        private PendingResult(TaskResult result, byte[] payload, int size) {
+            this.result = result;
+            this.payload = payload;
+            this.size = size;
+        }
+    }
+}
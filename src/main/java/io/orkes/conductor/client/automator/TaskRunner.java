@@ -15,10 +15,13 @@ package io.orkes.conductor.client.automator;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
@@ -28,6 +31,8 @@ import org.slf4j.LoggerFactory;
 import com.netflix.appinfo.InstanceInfo;
 import com.netflix.conductor.client.config.PropertyFactory;
 import com.netflix.conductor.client.telemetry.MetricsContainer;
+import com.netflix.conductor.client.worker.AsyncWorker;
+import com.netflix.conductor.client.worker.BatchWorker;
 import com.netflix.conductor.client.worker.Worker;
 import com.netflix.conductor.common.metadata.tasks.Task;
 import com.netflix.conductor.common.metadata.tasks.TaskResult;
@@ -47,20 +52,47 @@ class TaskRunner {
     private final EurekaClient eurekaClient;
     private final TaskClient taskClient;
     private final int updateRetryCount;
-    private final ThreadPoolExecutor executorService;
+    private final ExecutorService executorService;
     private final Map<String /* taskType */, String /* domain */> taskToDomain;
     private final int taskPollTimeout;
     public static final String DOMAIN = "domain";
-    private static final String OVERRIDE_DISCOVERY = "pollOutOfDiscovery";
     public static final String ALL_WORKERS = "all";
+    static final long WAIT_FOR_PERMITS = -1;
 
-    private final Semaphore permits;
+    private final ResizableSemaphore permits;
 
-    private final Worker worker;
+    private final LongAdder executionTimeMillis = new LongAdder();
+
+    private final LongAdder executionCount = new LongAdder();
+
+    private final PollScheduler pollScheduler;
+
+    private Stopwatch idleStopwatch;
+
+    /** Started on the first poll delayed by the rate limit, until a poll goes through */
+    private Stopwatch throttledStopwatch;
+
+    private final TaskUpdateBatcher taskUpdateBatcher;
+
+    private final TaskUpdateStage taskUpdateStage;
+
+    private final PrefetchBuffer prefetchBuffer;
 
-    private int pollingIntervalInMillis;
+    private final TaskResultOutbox taskResultOutbox;
 
-    private String domain;
+    private final TokenBucket rateLimiter;
+
+    private final BatchAccumulator batchAccumulator;
+
+    private final SharedTaskExecutor.Share share;
+
+    private final InFlightTaskRegistry inFlightTasks;
+
+    private final WeightedDomains weightedDomains;
+
+    private final Worker worker;
+
+    private final WorkerConfig workerConfig;
 
     private final String taskType;
 
@@ -68,35 +100,33 @@ class TaskRunner {
 
     private int pollingErrorCount = 0;
 
-    TaskRunner(
-            Worker worker,
-            EurekaClient eurekaClient,
-            TaskClient taskClient,
-            int updateRetryCount,
-            Map<String, String> taskToDomain,
-            String workerNamePrefix,
-            int threadCount,
-            int taskPollTimeout) {
+    private TaskRunner(Builder builder) {
+        Worker worker = builder.worker;
+        int threadCount = builder.threadCount;
         this.worker = worker;
-        this.eurekaClient = eurekaClient;
-        this.taskClient = taskClient;
-        this.updateRetryCount = updateRetryCount;
-        this.taskToDomain = taskToDomain;
-        this.taskPollTimeout = taskPollTimeout;
-        this.permits = new Semaphore(threadCount);
-        this.pollingIntervalInMillis = worker.getPollingInterval();
+        this.eurekaClient = builder.eurekaClient;
+        this.taskClient = builder.taskClient;
+        this.updateRetryCount = builder.updateRetryCount;
+        this.taskToDomain = builder.taskToDomain;
+        this.taskPollTimeout = builder.taskPollTimeout;
+        this.taskUpdateBatcher = builder.taskUpdateBatcher;
+        this.taskUpdateStage = builder.taskUpdateStage;
+        this.taskResultOutbox = builder.taskResultOutbox;
+        this.share = builder.share;
+        this.weightedDomains = builder.weightedDomains;
+        this.permits = new ResizableSemaphore(threadCount);
+        this.workerConfig = new WorkerConfig(worker, taskToDomain, builder.rateLimitPerSecond, builder.rateLimitBurst);
+        this.rateLimiter = new TokenBucket(workerConfig.getRateLimitPerSecond(), workerConfig.getRateLimitBurst());
+        this.pollScheduler = new PollScheduler(workerConfig.getPollingInterval(), workerConfig.getMaxIdlePollDelay());
         this.taskType = worker.getTaskDefName();
-
-        //1. Is there a worker level override?
-        this.domain = PropertyFactory.getString(taskType, DOMAIN, null);
-        if(this.domain == null) {
-            //2. If not, is there a blanket override?
-            this.domain = PropertyFactory.getString(ALL_WORKERS, DOMAIN, null);
-        }
-        if(this.domain == null) {
-            //3. was it supplied as part of the config?
-            this.domain = taskToDomain.get(taskType);
+        this.inFlightTasks = new InFlightTaskRegistry(taskType, workerConfig.getIdentity());
+        if (builder.leaseExtender != null) {
+            builder.leaseExtender.register(inFlightTasks);
         }
+        this.prefetchBuffer = builder.maxPrefetchCount > 0 ? new PrefetchBuffer(taskType, builder.maxPrefetchCount) : null;
+        this.batchAccumulator = worker instanceof BatchWorker
+                ? new BatchAccumulator(((BatchWorker) worker).getBatchSize(), ((BatchWorker) worker).getBatchLingerMillis())
+                : null;
 
         int defaultLoggingInterval = 100;
         int errorInterval = PropertyFactory.getInteger(taskType, "LOG_INTERVAL", 0);
@@ -108,7 +138,35 @@ class TaskRunner {
         }
         this.errorAt = errorInterval;
         LOGGER.info("Polling errors will be sampled at every {} error (after the first 100 errors) for taskType {}", this.errorAt, taskType);
-        this.executorService =
+        if (share != null) {
+            // Permits released by another task type may be what this runner is waiting for
+            share.setWakeUpListener(pollScheduler::onPermitsReleased);
+            this.executorService = share.getExecutorService();
+        } else {
+            this.executorService = createExecutorService(builder.workerNamePrefix, threadCount, builder.useVirtualThreads);
+        }
+        LOGGER.info(
+                "Starting Worker for taskType '{}' with {} {} threads, {} ms polling interval and domain {}",
+                taskType,
+                threadCount,
+                share != null ? "shared" : executorService instanceof VirtualThreadExecutor ? "virtual" : "platform",
+                workerConfig.getPollingInterval(),
+                workerConfig.getDomain());
+        LOGGER.info("Polling errors for taskType {} will be printed at every {} occurance.", taskType, errorAt);
+
+    }
+
+    private ExecutorService createExecutorService(String workerNamePrefix, int threadCount, boolean useVirtualThreads) {
+        if (useVirtualThreads) {
+            // Each task gets its own virtual thread, concurrency is bounded by the permits
+            if (VirtualThreadExecutor.isSupported()) {
+                return new VirtualThreadExecutor(
+                        workerNamePrefix.replace("%d", ""), threadCount, uncaughtExceptionHandler);
+            }
+            LOGGER.warn("Virtual threads are not available on Java {} for taskType {}, falling back to a fixed thread pool",
+                    System.getProperty("java.version"), taskType);
+        }
+        ThreadPoolExecutor threadPoolExecutor =
                 (ThreadPoolExecutor)
                         Executors.newFixedThreadPool(
                                 threadCount,
@@ -116,48 +174,201 @@ class TaskRunner {
                                         .namingPattern(workerNamePrefix)
                                         .uncaughtExceptionHandler(uncaughtExceptionHandler)
                                         .build());
-        ThreadPoolMonitor.attach(REGISTRY, (ThreadPoolExecutor) executorService, workerNamePrefix);
-        LOGGER.info(
-                "Starting Worker for taskType '{}' with {} threads, {} ms polling interval and domain {}",
-                taskType,
-                threadCount,
-                pollingIntervalInMillis,
-                domain);
-        LOGGER.info("Polling errors for taskType {} will be printed at every {} occurance.", taskType, errorAt);
+        ThreadPoolMonitor.attach(REGISTRY, threadPoolExecutor, workerNamePrefix);
+        return threadPoolExecutor;
+    }
 
+    ExecutorService getExecutorService() {
+        return executorService;
     }
 
-    public void pollAndExecute() {
-        Stopwatch stopwatch = null;
-        while (true) {
-            try {
-                List<Task> tasks = pollTasksForWorker();
-                if (tasks.isEmpty()) {
-                    if (stopwatch == null) {
-                        stopwatch = Stopwatch.createStarted();
-                    }
-                    Uninterruptibles.sleepUninterruptibly(pollingIntervalInMillis, TimeUnit.MILLISECONDS);
-                    continue;
-                }
-                if (stopwatch != null) {
-                    stopwatch.stop();
-                    LOGGER.trace("Poller for task {} waited for {} ms before getting {} tasks to execute", taskType, stopwatch.elapsed(TimeUnit.MILLISECONDS), tasks.size());
-                    stopwatch = null;
-                }
-                tasks.forEach(task -> this.executorService.submit(() -> this.processTask(task)));
-            } catch (Throwable t) {
-                LOGGER.error(t.getMessage(), t);
+    /**
+     * Polls once and submits the polled tasks for execution.
+     *
+     * @return time in milliseconds before the next poll, or {@link #WAIT_FOR_PERMITS} if all the
+     *     permits are in use and the next poll should happen when one is released
+     */
+    long pollOnce() {
+        if (prefetchBuffer != null) {
+            submitPrefetchedTasks();
+        }
+        if (batchAccumulator != null) {
+            submitDueBatch(false);
+        }
+        if (!hasAvailablePermits()) {
+            // Permits held by a lingering batch are released only once the batch is submitted
+            long batchDueMillis = batchAccumulator == null ? -1 : batchAccumulator.millisUntilDue();
+            return batchDueMillis >= 0 ? Math.max(1, batchDueMillis) : WAIT_FOR_PERMITS;
+        }
+        long throttledMillis = rateLimiter.millisUntilAvailable();
+        if (throttledMillis > 0) {
+            if (throttledStopwatch == null) {
+                throttledStopwatch = Stopwatch.createStarted();
+            }
+            return throttledMillis;
+        }
+        if (throttledStopwatch != null) {
+            MetricsContainer.getThrottledWaitTimer(taskType).record(throttledStopwatch.elapsed(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+            throttledStopwatch = null;
+        }
+        int received = pollAndSubmitTasks();
+        if (share != null) {
+            share.setBusy(received > 0);
+        }
+        if (received == 0) {
+            if (idleStopwatch == null) {
+                idleStopwatch = Stopwatch.createStarted();
             }
+            long delay = pollScheduler.onEmptyPoll();
+            long batchDueMillis = batchAccumulator == null ? -1 : batchAccumulator.millisUntilDue();
+            return batchDueMillis >= 0 ? Math.min(delay, Math.max(1, batchDueMillis)) : delay;
+        }
+        pollScheduler.onTasksReceived();
+        if (idleStopwatch != null) {
+            idleStopwatch.stop();
+            LOGGER.trace("Poller for task {} waited for {} ms before getting {} tasks to execute", taskType, idleStopwatch.elapsed(TimeUnit.MILLISECONDS), received);
+            idleStopwatch = null;
         }
+        return 0;
     }
 
-    public void shutdown(int timeout) {
+    /** Starts buffered tasks on the permits released while the buffer was being filled. */
+    private void submitPrefetchedTasks() {
+        while (prefetchBuffer.size() > 0 && tryAcquirePermit()) {
+            Task task = prefetchBuffer.poll();
+            if (task == null) {
+                releasePermits(1);
+                return;
+            }
+            dispatch(task);
+        }
+    }
+
+    /** Starts a task holding a permit, or adds it to the next batch of a {@link BatchWorker}. */
+    private void dispatch(Task task) {
+        if (batchAccumulator == null) {
+            executorService.submit(() -> processTask(task));
+            return;
+        }
+        List<Task> batch = batchAccumulator.add(task);
+        if (batch != null) {
+            executorService.submit(() -> processBatch(batch));
+        }
+    }
+
+    /**
+     * @param force submit the pending tasks even if the batch is neither full nor due
+     */
+    private void submitDueBatch(boolean force) {
+        List<Task> batch = batchAccumulator.takeDue(force);
+        if (!batch.isEmpty()) {
+            executorService.submit(() -> processBatch(batch));
+        }
+    }
+
+    PollScheduler getPollScheduler() {
+        return pollScheduler;
+    }
+
+    String getTaskType() {
+        return taskType;
+    }
+
+    /** Re-reads the worker configuration, called periodically outside of the poll loop. */
+    void refreshConfig() {
+        workerConfig.refresh();
+        pollScheduler.setIntervals(workerConfig.getPollingInterval(), workerConfig.getMaxIdlePollDelay());
+        rateLimiter.update(workerConfig.getRateLimitPerSecond(), workerConfig.getRateLimitBurst());
+    }
+
+    /**
+     * @return true if there is a free permit, or room in the prefetch buffer
+     */
+    boolean hasAvailablePermits() {
+        return (permits.availablePermits() > 0 && (share == null || share.hasRoom()))
+                || (prefetchBuffer != null && prefetchBuffer.getRoom(permits.getMaxPermits()) > 0);
+    }
+
+    int getConcurrencyLimit() {
+        return permits.getMaxPermits();
+    }
+
+    int getInFlightCount() {
+        return permits.getUsedPermits();
+    }
+
+    InFlightTaskRegistry getInFlightTaskRegistry() {
+        return inFlightTasks;
+    }
+
+    /**
+     * @return average execution time in milliseconds of the tasks completed since the previous
+     *     call, or -1 if no task completed in the meantime
+     */
+    double sampleAverageExecutionTime() {
+        long count = executionCount.sumThenReset();
+        long total = executionTimeMillis.sumThenReset();
+        return count == 0 ? -1 : (double) total / count;
+    }
+
+    /**
+     * Changes the number of tasks executed concurrently. When shrinking, tasks already running are
+     * not interrupted, no new task is polled until the in-flight count drops below the new limit.
+     */
+    void resize(int concurrencyLimit) {
+        int current = permits.getMaxPermits();
+        if (concurrencyLimit == current) {
+            return;
+        }
+        if (executorService instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) executorService;
+            // Core size can never exceed the maximum size, order the updates accordingly
+            if (concurrencyLimit > current) {
+                threadPoolExecutor.setMaximumPoolSize(concurrencyLimit);
+                threadPoolExecutor.setCorePoolSize(concurrencyLimit);
+            } else {
+                threadPoolExecutor.setCorePoolSize(concurrencyLimit);
+                threadPoolExecutor.setMaximumPoolSize(concurrencyLimit);
+            }
+        }
+        permits.resize(concurrencyLimit);
+        LOGGER.debug("Concurrency limit for taskType {} changed from {} to {}", taskType, current, concurrencyLimit);
+        if (concurrencyLimit > current) {
+            pollScheduler.onPermitsReleased();
+        }
+    }
+
+    /**
+     * Waits for the executing and prefetched tasks to complete, then releases the threads. Polling
+     * must already be stopped.
+     *
+     * @param timeoutMillis time given to the tasks to complete
+     * @return number of tasks abandoned, still executing or buffered when the timeout expired
+     */
+    int drain(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!isIdle() && System.currentTimeMillis() < deadline) {
+            if (prefetchBuffer != null) {
+                submitPrefetchedTasks();
+            }
+            if (batchAccumulator != null) {
+                submitDueBatch(true);
+            }
+            Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+        }
+        int abandoned = permits.getUsedPermits() + (prefetchBuffer == null ? 0 : prefetchBuffer.size());
+        if (share != null) {
+            // The shared pool is shut down once all the task types are drained
+            reportAbandoned(abandoned);
+            return abandoned;
+        }
         try {
             this.executorService.shutdown();
-            if (executorService.awaitTermination(timeout, TimeUnit.SECONDS)) {
+            long remaining = Math.max(0, deadline - System.currentTimeMillis());
+            if (executorService.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
                 LOGGER.debug("tasks completed, shutting down");
             } else {
-                LOGGER.warn(String.format("forcing shutdown after waiting for %s second", timeout));
+                LOGGER.warn("forcing shutdown of {} after waiting for {} ms", taskType, timeoutMillis);
                 executorService.shutdownNow();
             }
         } catch (InterruptedException ie) {
@@ -165,77 +376,169 @@ class TaskRunner {
             executorService.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        reportAbandoned(abandoned);
+        return abandoned;
     }
 
-    private List<Task> pollTasksForWorker() {
-        List<Task> tasks = new LinkedList<>();
+    private void reportAbandoned(int abandoned) {
+        if (abandoned > 0) {
+            LOGGER.warn("Abandoned {} tasks of type {}, they will be retried after their timeout", abandoned, taskType);
+            MetricsContainer.incrementTaskDrainAbandonedCount(taskType, abandoned);
+        }
+    }
+
+    private boolean isIdle() {
+        return permits.getUsedPermits() == 0 && (prefetchBuffer == null || prefetchBuffer.size() == 0);
+    }
+
+    /**
+     * Polls for as many tasks as there are free permits, plus the room in the prefetch buffer.
+     * Tasks holding a permit are submitted for execution, the others are buffered.
+     *
+     * @return number of tasks received
+     */
+    private int pollAndSubmitTasks() {
+        List<Task> tasks = Collections.emptyList();
 
-        Boolean discoveryOverride =
-                Optional.ofNullable(
-                                PropertyFactory.getBoolean(
-                                        taskType, OVERRIDE_DISCOVERY, null))
-                        .orElseGet(
-                                () ->
-                                        PropertyFactory.getBoolean(
-                                                ALL_WORKERS, OVERRIDE_DISCOVERY, false));
         if (eurekaClient != null
-                && !eurekaClient.getInstanceRemoteStatus().equals(InstanceInfo.InstanceStatus.UP)
-                && !discoveryOverride) {
+                && !workerConfig.isDiscoveryOverride()
+                && !eurekaClient.getInstanceRemoteStatus().equals(InstanceInfo.InstanceStatus.UP)) {
             LOGGER.trace("Instance is NOT UP in discovery - will not poll");
-            return tasks;
+            return 0;
         }
-        if (worker.paused()) {
+        if (workerConfig.isPaused()) {
             MetricsContainer.incrementTaskPausedCount(taskType);
             LOGGER.trace("Worker {} has been paused. Not polling anymore!", worker.getClass());
-            return tasks;
+            return 0;
         }
-        int pollCount = 0;
+        int permitCount = 0;
         while(permits.tryAcquire()){
-            pollCount++;
+            permitCount++;
         }
+        if (share != null) {
+            // Only keep the permits the shared pool can run
+            int granted = share.tryAcquire(permitCount);
+            permits.release(permitCount - granted);
+            permitCount = granted;
+        }
+        int prefetchCount = prefetchBuffer == null ? 0 : prefetchBuffer.getRoom(permits.getMaxPermits());
+        // Only lease as many tasks as the rate limit allows to start
+        int pollCount = rateLimiter.tryAcquire(permitCount + prefetchCount);
         if(pollCount == 0) {
-            return tasks;
+            releasePermits(permitCount);
+            return 0;
         }
 
         try {
 
 
-            LOGGER.trace("Polling task of type: {} in domain: '{}' with size {}", taskType, domain, pollCount);
+            LOGGER.trace("Polling task of type: {} in domain: '{}' with size {}", taskType, weightedDomains != null ? weightedDomains.getDomains() : workerConfig.getDomain(), pollCount);
             Stopwatch stopwatch = Stopwatch.createStarted();
             int tasksToPoll = pollCount;
-            tasks = MetricsContainer.getPollTimer(taskType).record(() -> pollTask(domain, tasksToPoll));
+            tasks = MetricsContainer.getPollTimer(taskType).record(() -> pollDomains(tasksToPoll));
             stopwatch.stop();
-            permits.release(pollCount - tasks.size());        //release extra permits
+            releasePermits(Math.max(0, permitCount - tasks.size()));        //release extra permits
             LOGGER.debug("Time taken to poll {} task with a batch size of {} is {} ms", taskType, tasks.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
 
         }  catch (Throwable e) {
-            permits.release(pollCount - tasks.size());
-
-            //For the first 100 errors, just print them as is...
-            boolean printError = false;
-            if(pollingErrorCount < 100 || pollingErrorCount % errorAt == 0) {
-                printError = true;
-            }
-            pollingErrorCount++;
-            if(pollingErrorCount > 10_000_000) {
-                //Reset after 10 million errors
-                pollingErrorCount = 0;
+            releasePermits(Math.max(0, permitCount - tasks.size()));
+            reportPollError(workerConfig.getDomain(), e);
+        }
+        rateLimiter.refund(pollCount - tasks.size());
+        int index = 0;
+        for (Task task : tasks) {
+            if (index++ < permitCount) {
+                if (prefetchBuffer != null) {
+                    prefetchBuffer.recordResponseTimeout(task);
+                }
+                dispatch(task);
+            } else {
+                prefetchBuffer.add(task);
             }
-            if(printError) {
-                LOGGER.error("Error polling for taskType: {}, error = {}", taskType, e.getMessage(), e);
+        }
+        if (batchAccumulator != null) {
+            submitDueBatch(false);
+        }
+        return tasks.size();
+    }
+
+    /**
+     * Polls the domain of the worker, or each weighted domain in turn. Only the last call of a
+     * second pass may wait on the server for {@code taskPollTimeout}, so that an empty domain does
+     * not delay the others. A domain whose poll fails is reported and skipped until the next poll.
+     */
+    private List<Task> pollDomains(int count) {
+        if (weightedDomains == null) {
+            return pollTask(workerConfig.getDomain(), count, taskPollTimeout);
+        }
+        List<String> domains = weightedDomains.getDomains();
+        boolean[] eligible = new boolean[domains.size()];
+        Arrays.fill(eligible, true);
+        List<Task> tasks = new ArrayList<>(count);
+        int remaining = count;
+        // The share left unused by the domains that ran out of tasks is offered once to the others
+        for (int pass = 0; pass < 2 && remaining > 0; pass++) {
+            int[] allocation = weightedDomains.allocate(remaining, eligible);
+            int last = lastAllocated(allocation);
+            for (int i = 0; i < domains.size(); i++) {
+                if (allocation[i] == 0) {
+                    continue;
+                }
+                List<Task> polled;
+                try {
+                    polled = pollTask(domains.get(i), allocation[i], pass == 1 && i == last ? taskPollTimeout : 0);
+                } catch (RuntimeException e) {
+                    // Reported even when other domains return tasks, a domain that always fails must show
+                    eligible[i] = false;
+                    reportPollError(domains.get(i), e);
+                    continue;
+                }
+                tasks.addAll(polled);
+                remaining -= polled.size();
+                if (polled.size() < allocation[i]) {
+                    eligible[i] = false;
+                }
             }
         }
         return tasks;
     }
 
-    private List<Task> pollTask(String domain, int count) {
+    private void reportPollError(String domain, Throwable e) {
+        if (e instanceof Exception) {
+            MetricsContainer.incrementTaskPollErrorCount(taskType, (Exception) e);
+        }
+        //For the first 100 errors, just print them as is...
+        boolean printError = false;
+        if(pollingErrorCount < 100 || pollingErrorCount % errorAt == 0) {
+            printError = true;
+        }
+        pollingErrorCount++;
+        if(pollingErrorCount > 10_000_000) {
+            //Reset after 10 million errors
+            pollingErrorCount = 0;
+        }
+        if(printError) {
+            LOGGER.error("Error polling for taskType: {} in domain: {}, error = {}", taskType, domain, e.getMessage(), e);
+        }
+    }
+
+    private static int lastAllocated(int[] allocation) {
+        for (int i = allocation.length - 1; i >= 0; i--) {
+            if (allocation[i] > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private List<Task> pollTask(String domain, int count, int timeout) {
         if (count < 1) {
             return Collections.emptyList();
         }
-        String workerId = worker.getIdentity();
+        String workerId = workerConfig.getIdentity();
         LOGGER.debug("poll {} in the domain {} with batch size {}", taskType, domain, count);
         return taskClient.batchPollTasksInDomain(
-                taskType, domain, workerId, count, this.taskPollTimeout);
+                taskType, domain, workerId, count, timeout);
     }
 
     @SuppressWarnings("FieldCanBeLocal")
@@ -247,7 +550,11 @@ class TaskRunner {
             };
 
     private void processTask(Task task) {
-        LOGGER.trace("Executing task: {} of type: {} in worker: {} at {}", task.getTaskId(), taskType, worker.getClass().getSimpleName(), worker.getIdentity());
+        if (worker instanceof AsyncWorker) {
+            processTaskAsync((AsyncWorker) worker, task);
+            return;
+        }
+        LOGGER.trace("Executing task: {} of type: {} in worker: {} at {}", task.getTaskId(), taskType, worker.getClass().getSimpleName(), workerConfig.getIdentity());
         LOGGER.trace("task {} is getting executed after {} ms of getting polled", task.getTaskId(), (System.currentTimeMillis()-task.getStartTime()));
         try {
             Stopwatch stopwatch = Stopwatch.createStarted();
@@ -262,8 +569,150 @@ class TaskRunner {
             TaskResult result = new TaskResult(task);
             handleException(t, result, worker, task);
         } finally {
+            releasePermit();
+        }
+    }
+
+    /**
+     * The thread returns to the pool as soon as the execution is started, the permit of the task is
+     * held until the returned future completes.
+     */
+    private void processTaskAsync(AsyncWorker asyncWorker, Task task) {
+        LOGGER.trace("Executing task: {} of type: {} in async worker: {} at {}", task.getTaskId(), taskType, worker.getClass().getSimpleName(), workerConfig.getIdentity());
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        CompletableFuture<TaskResult> execution;
+        try {
+            // The thread is released as soon as the execution is started
+            inFlightTasks.add(task, null);
+            execution = asyncWorker.executeAsync(task);
+            if (execution == null) {
+                execution = CompletableFuture.failedFuture(new NullPointerException("executeAsync returned null"));
+            }
+        } catch (Throwable t) {
+            execution = CompletableFuture.failedFuture(t);
+        }
+        try {
+            // Complete on the worker pool: the future may be completed by an I/O thread that must not run the update
+            execution.whenCompleteAsync((result, error) -> onAsyncExecutionComplete(task, result, error, stopwatch), executorService);
+        } catch (Throwable t) {
+            LOGGER.error("Unable to wait for the execution of task: {}", task.getTaskId(), t);
+            inFlightTasks.remove(task);
+            releasePermit();
+        }
+    }
+
+    private void onAsyncExecutionComplete(Task task, TaskResult result, Throwable error, Stopwatch stopwatch) {
+        try {
+            inFlightTasks.remove(task);
+            recordExecutionTime(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+            if (error == null && result == null) {
+                error = new NullPointerException("executeAsync completed without a result");
+            }
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                task.setStatus(Task.Status.FAILED);
+                handleException(cause, new TaskResult(task), worker, task);
+                return;
+            }
+            result.setWorkflowInstanceId(task.getWorkflowInstanceId());
+            result.setTaskId(task.getTaskId());
+            result.setWorkerId(workerConfig.getIdentity());
+            updateTaskResult(updateRetryCount, task, result, worker);
+        } catch (Throwable t) {
+            LOGGER.error("Unable to complete task: {}", task.getTaskId(), t);
+        } finally {
+            releasePermit();
+        }
+    }
+
+    /**
+     * Executes a batch in one call and sends the result of each task separately. A permit is held
+     * for every task of the batch until the batch completes.
+     */
+    private void processBatch(List<Task> tasks) {
+        LOGGER.trace("Executing batch of {} tasks of type: {} in worker: {} at {}", tasks.size(), taskType, worker.getClass().getSimpleName(), workerConfig.getIdentity());
+        try {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            List<TaskResult> results = null;
+            Throwable error = null;
+            try {
+                tasks.forEach(task -> inFlightTasks.add(task, Thread.currentThread()));
+                results = ((BatchWorker) worker).execute(tasks);
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                tasks.forEach(inFlightTasks::remove);
+                // Each task gets its share of the batch, the autoscaler and the prefetch buffer read
+                // the per task execution time
+                long elapsedPerTask = stopwatch.elapsed(TimeUnit.MILLISECONDS) / tasks.size();
+                tasks.forEach(task -> recordExecutionTime(elapsedPerTask));
+            }
+            Map<String, TaskResult> resultsByTaskId = new HashMap<>();
+            if (results != null) {
+                for (TaskResult result : results) {
+                    if (result != null && result.getTaskId() != null) {
+                        resultsByTaskId.put(result.getTaskId(), result);
+                    }
+                }
+            }
+            for (Task task : tasks) {
+                try {
+                    TaskResult result = resultsByTaskId.get(task.getTaskId());
+                    if (result == null) {
+                        task.setStatus(Task.Status.FAILED);
+                        Throwable cause = error != null ? error : new IllegalStateException("The batch worker returned no result for the task");
+                        handleException(cause, new TaskResult(task), worker, task);
+                        continue;
+                    }
+                    result.setWorkflowInstanceId(task.getWorkflowInstanceId());
+                    result.setWorkerId(workerConfig.getIdentity());
+                    updateTaskResult(updateRetryCount, task, result, worker);
+                } catch (Throwable t) {
+                    LOGGER.error("Unable to complete task: {}", task.getTaskId(), t);
+                }
+            }
+        } finally {
+            tasks.forEach(task -> releasePermit());
+        }
+    }
+
+    private void releasePermit() {
+        // Hand the permit over to the next buffered task, unless the concurrency was lowered
+        Task next = prefetchBuffer != null && permits.availablePermits() >= 0 ? prefetchBuffer.poll() : null;
+        if (next != null) {
+            dispatch(next);
+        } else {
+            releasePermits(1);
+        }
+        pollScheduler.onPermitsReleased();
+    }
+
+    private boolean tryAcquirePermit() {
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        if (share != null && share.tryAcquire(1) == 0) {
             permits.release();
+            return false;
+        }
+        return true;
+    }
+
+    private void releasePermits(int count) {
+        permits.release(count);
+        if (share != null) {
+            share.release(count);
+        }
+    }
+
+    private void recordExecutionTime(long elapsed) {
+        executionTimeMillis.add(elapsed);
+        executionCount.increment();
+        if (prefetchBuffer != null) {
+            prefetchBuffer.recordExecutionTime(elapsed);
         }
+        MetricsContainer.getExecutionTimer(worker.getTaskDefName())
+                .record(elapsed, TimeUnit.MILLISECONDS);
     }
 
     private void executeTask(Worker worker, Task task) {
@@ -278,11 +727,12 @@ class TaskRunner {
                     "Executing task: {} in worker: {} at {}",
                     task.getTaskId(),
                     worker.getClass().getSimpleName(),
-                    worker.getIdentity());
+                    workerConfig.getIdentity());
+            inFlightTasks.add(task, Thread.currentThread());
             result = worker.execute(task);
             result.setWorkflowInstanceId(task.getWorkflowInstanceId());
             result.setTaskId(task.getTaskId());
-            result.setWorkerId(worker.getIdentity());
+            result.setWorkerId(workerConfig.getIdentity());
         } catch (Exception e) {
             LOGGER.error(
                     "Unable to execute task: {} of type: {}",
@@ -296,15 +746,15 @@ class TaskRunner {
             }
             handleException(e, result, worker, task);
         } finally {
+            inFlightTasks.remove(task);
             stopwatch.stop();
-            MetricsContainer.getExecutionTimer(worker.getTaskDefName())
-                    .record(stopwatch.elapsed(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+            recordExecutionTime(stopwatch.elapsed(TimeUnit.MILLISECONDS));
         }
         LOGGER.trace(
                 "Task: {} executed by worker: {} at {} with status: {}",
                 task.getTaskId(),
                 worker.getClass().getSimpleName(),
-                worker.getIdentity(),
+                workerConfig.getIdentity(),
                 result.getStatus());
         Stopwatch updateStopWatch = Stopwatch.createStarted();
         updateTaskResult(updateRetryCount, task, result, worker);
@@ -316,20 +766,32 @@ class TaskRunner {
     }
 
     private void updateTaskResult(int count, Task task, TaskResult result, Worker worker) {
+        if (taskUpdateStage != null || taskUpdateBatcher != null) {
+            // The upload is retried off the worker thread as well, its permit is released right away
+            uploadAsync(count, count, task, result)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                            onUpdateFailure(task, result, worker, cause, -1);
+                        } else {
+                            sendAsync(count, task, result, worker);
+                        }
+                    });
+            return;
+        }
+        long outboxSequence = -1;
         try {
             // upload if necessary
-            Optional<String> optionalExternalStorageLocation =
-                    retryOperation(
-                            (TaskResult taskResult) -> upload(taskResult, task.getTaskType()),
-                            count,
-                            result,
-                            "evaluateAndUploadLargePayload");
-
-            if (optionalExternalStorageLocation.isPresent()) {
-                result.setExternalOutputPayloadStoragePath(optionalExternalStorageLocation.get());
-                result.setOutputData(null);
-            }
+            retryOperation(
+                    (TaskResult taskResult) -> {
+                        uploadIfNeeded(task, taskResult);
+                        return null;
+                    },
+                    count,
+                    result,
+                    "evaluateAndUploadLargePayload");
 
+            outboxSequence = appendToOutbox(result);
             retryOperation(
                     (TaskResult taskResult) -> {
                         taskClient.updateTask(taskResult);
@@ -338,20 +800,126 @@ class TaskRunner {
                     count,
                     result,
                     "updateTask");
+            if (outboxSequence >= 0) {
+                taskResultOutbox.acknowledge(outboxSequence);
+            }
+        } catch (Exception e) {
+            onUpdateFailure(task, result, worker, e, outboxSequence);
+        }
+    }
+
+    /** Sends the result through the update stage or the batcher, which retry failed updates. */
+    private void sendAsync(int count, Task task, TaskResult result, Worker worker) {
+        long outboxSequence = appendToOutbox(result);
+        try {
+            if (taskUpdateStage != null) {
+                taskUpdateStage.submit(taskType, result)
+                        .whenComplete((ignored, error) -> {
+                            if (error != null) {
+                                onUpdateFailure(task, result, worker, error, outboxSequence);
+                            } else if (outboxSequence >= 0) {
+                                taskResultOutbox.acknowledge(outboxSequence);
+                            }
+                        });
+                return;
+            }
+            // The result is sent with the next batch
+            submitToBatcher(count, 0, task, result, worker, outboxSequence);
+        } catch (Exception e) {
+            onUpdateFailure(task, result, worker, e, outboxSequence);
+        }
+    }
+
+    /**
+     * Uploads the output to the external storage if it is too large. The first attempt runs on the
+     * calling thread, a failed attempt is retried after the same delay as the blocking retries on
+     * the common pool.
+     *
+     * @param attemptsLeft attempts left, including this one
+     */
+    private CompletableFuture<Void> uploadAsync(int attemptsLeft, int count, Task task, TaskResult result) {
+        try {
+            uploadIfNeeded(task, result);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            LOGGER.error("Error executing {}", "evaluateAndUploadLargePayload", e);
+            if (attemptsLeft <= 1) {
+                return CompletableFuture.failedFuture(
+                        new RuntimeException("Exhausted retries performing evaluateAndUploadLargePayload", e));
+            }
+            CompletableFuture<CompletableFuture<Void>> retry = CompletableFuture.supplyAsync(
+                    () -> uploadAsync(attemptsLeft - 1, count, task, result),
+                    CompletableFuture.delayedExecutor(retryDelayMillis(count), TimeUnit.MILLISECONDS));
+            return retry.thenCompose(Function.identity());
+        }
+    }
+
+    private void uploadIfNeeded(Task task, TaskResult result) {
+        Optional<String> optionalExternalStorageLocation = upload(result, task.getTaskType());
+        if (optionalExternalStorageLocation.isPresent()) {
+            result.setExternalOutputPayloadStoragePath(optionalExternalStorageLocation.get());
+            result.setOutputData(null);
+        }
+    }
+
+    /**
+     * @return sequence of the result in the outbox, -1 if there is no outbox or the result could
+     *     not be persisted
+     */
+    private long appendToOutbox(TaskResult result) {
+        if (taskResultOutbox == null) {
+            return -1;
+        }
+        try {
+            return taskResultOutbox.append(result);
         } catch (Exception e) {
-            worker.onErrorUpdate(task);
+            LOGGER.error("Unable to persist the result of task {} in the outbox, sending it anyway", result.getTaskId(), e);
+            return -1;
+        }
+    }
+
+    private void onUpdateFailure(Task task, TaskResult result, Worker worker, Throwable e, long outboxSequence) {
+        if (outboxSequence >= 0) {
+            // The outbox keeps sending the result until the server accepts it
+            taskResultOutbox.release(outboxSequence);
             MetricsContainer.incrementTaskUpdateErrorCount(worker.getTaskDefName(), e);
-            LOGGER.error(
-                    String.format(
-                            "Failed to update result: %s for task: %s in worker: %s",
-                            result.toString(), task.getTaskDefName(), worker.getIdentity()),
-                    e);
+            LOGGER.warn("Failed to update result for task: {}, it will be sent again from the outbox", task.getTaskId(), e);
+            return;
         }
+        worker.onErrorUpdate(task);
+        MetricsContainer.incrementTaskUpdateErrorCount(worker.getTaskDefName(), e);
+        LOGGER.error(
+                String.format(
+                        "Failed to update result: %s for task: %s in worker: %s",
+                        result.toString(), task.getTaskDefName(), workerConfig.getIdentity()),
+                e);
+    }
+
+    /**
+     * @param attemptsLeft attempts left for this result, a failed attempt queues it for a later
+     *     batch after the same delay as the blocking retries
+     * @param delayMillis delay before the result is queued
+     */
+    private void submitToBatcher(int attemptsLeft, long delayMillis, Task task, TaskResult result, Worker worker, long outboxSequence) {
+        CompletableFuture<Void> update = delayMillis > 0
+                ? taskUpdateBatcher.submit(result, delayMillis)
+                : taskUpdateBatcher.submit(result);
+        update.whenComplete((ignored, error) -> {
+            if (error == null) {
+                if (outboxSequence >= 0) {
+                    taskResultOutbox.acknowledge(outboxSequence);
+                }
+            } else if (attemptsLeft > 1) {
+                MetricsContainer.incrementTaskUpdateRetryCount(taskType);
+                submitToBatcher(attemptsLeft - 1, retryDelayMillis(updateRetryCount), task, result, worker, outboxSequence);
+            } else {
+                onUpdateFailure(task, result, worker, error, outboxSequence);
+            }
+        });
     }
 
     private Optional<String> upload(TaskResult result, String taskType) {
-        // do nothing
-        return Optional.empty();
+        return taskClient.evaluateAndUploadLargePayload(result.getOutputData(), taskType);
     }
 
     private <T, R> R retryOperation(Function<T, R> operation, int count, T input, String opName) {
@@ -362,12 +930,16 @@ class TaskRunner {
             } catch (Exception e) {
                 LOGGER.error("Error executing {}", opName, e);
                 index++;
-                Uninterruptibles.sleepUninterruptibly(500L * (count+1), TimeUnit.MILLISECONDS);
+                Uninterruptibles.sleepUninterruptibly(retryDelayMillis(count), TimeUnit.MILLISECONDS);
             }
         }
         throw new RuntimeException("Exhausted retries performing " + opName);
     }
 
+    private static long retryDelayMillis(int count) {
+        return 500L * (count + 1);
+    }
+
     private void handleException(Throwable t, TaskResult result, Worker worker, Task task) {
         LOGGER.error(String.format("Error while executing task %s", task.toString()), t);
         MetricsContainer.incrementTaskExecutionErrorCount(taskType, t);
@@ -378,4 +950,118 @@ class TaskRunner {
         result.log(stringWriter.toString());
         updateTaskResult(updateRetryCount, task, result, worker);
     }
+
+    /**
+     * Builder used to create the instances of TaskRunner, only the worker and the task client are
+     * required.
+     */
+    static class Builder {
+        private final Worker worker;
+        private final TaskClient taskClient;
+        private EurekaClient eurekaClient;
+        private int updateRetryCount = 3;
+        private Map<String /* taskType */, String /* domain */> taskToDomain = Map.of();
+        private String workerNamePrefix = "workflow-worker-%d";
+        private int threadCount = 1;
+        private int taskPollTimeout = 0;
+        private boolean useVirtualThreads = false;
+        private TaskUpdateBatcher taskUpdateBatcher;
+        private TaskUpdateStage taskUpdateStage;
+        private int maxPrefetchCount = 0;
+        private LeaseExtender leaseExtender;
+        private TaskResultOutbox taskResultOutbox;
+        private double rateLimitPerSecond = 0;
+        private int rateLimitBurst = 0;
+        private SharedTaskExecutor.Share share;
+        private WeightedDomains weightedDomains;
+
+        Builder(Worker worker, TaskClient taskClient) {
+            this.worker = worker;
+            this.taskClient = taskClient;
+        }
+
+        Builder withEurekaClient(EurekaClient eurekaClient) {
+            this.eurekaClient = eurekaClient;
+            return this;
+        }
+
+        Builder withUpdateRetryCount(int updateRetryCount) {
+            this.updateRetryCount = updateRetryCount;
+            return this;
+        }
+
+        Builder withTaskToDomain(Map<String, String> taskToDomain) {
+            this.taskToDomain = taskToDomain;
+            return this;
+        }
+
+        Builder withWorkerNamePrefix(String workerNamePrefix) {
+            this.workerNamePrefix = workerNamePrefix;
+            return this;
+        }
+
+        Builder withThreadCount(int threadCount) {
+            this.threadCount = threadCount;
+            return this;
+        }
+
+        /**
+         * @param taskPollTimeout time in milliseconds the server may hold a poll that finds no
+         *     task, defaults to 0 so that a poll never blocks the polling thread
+         */
+        Builder withTaskPollTimeout(int taskPollTimeout) {
+            this.taskPollTimeout = taskPollTimeout;
+            return this;
+        }
+
+        Builder withVirtualThreads(boolean useVirtualThreads) {
+            this.useVirtualThreads = useVirtualThreads;
+            return this;
+        }
+
+        Builder withTaskUpdateBatcher(TaskUpdateBatcher taskUpdateBatcher) {
+            this.taskUpdateBatcher = taskUpdateBatcher;
+            return this;
+        }
+
+        Builder withTaskUpdateStage(TaskUpdateStage taskUpdateStage) {
+            this.taskUpdateStage = taskUpdateStage;
+            return this;
+        }
+
+        Builder withMaxPrefetchCount(int maxPrefetchCount) {
+            this.maxPrefetchCount = maxPrefetchCount;
+            return this;
+        }
+
+        Builder withLeaseExtender(LeaseExtender leaseExtender) {
+            this.leaseExtender = leaseExtender;
+            return this;
+        }
+
+        Builder withTaskResultOutbox(TaskResultOutbox taskResultOutbox) {
+            this.taskResultOutbox = taskResultOutbox;
+            return this;
+        }
+
+        Builder withRateLimit(double rateLimitPerSecond, int rateLimitBurst) {
+            this.rateLimitPerSecond = rateLimitPerSecond;
+            this.rateLimitBurst = rateLimitBurst;
+            return this;
+        }
+
+        Builder withShare(SharedTaskExecutor.Share share) {
+            this.share = share;
+            return this;
+        }
+
+        Builder withWeightedDomains(WeightedDomains weightedDomains) {
+            this.weightedDomains = weightedDomains;
+            return this;
+        }
+
+        TaskRunner build() {
+            return new TaskRunner(this);
+        }
+    }
 }
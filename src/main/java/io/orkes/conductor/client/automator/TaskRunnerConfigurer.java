@@ -12,8 +12,12 @@
  */
 package io.orkes.conductor.client.automator;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -21,7 +25,10 @@ import org.slf4j.LoggerFactory;
 
 import com.netflix.conductor.client.config.ConductorClientConfiguration;
 import com.netflix.conductor.client.config.PropertyFactory;
+import com.netflix.conductor.client.telemetry.MetricsContainer;
+import com.netflix.conductor.client.worker.BatchWorker;
 import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
 import com.netflix.discovery.EurekaClient;
 
 import io.orkes.conductor.client.ApiClient;
@@ -37,6 +44,13 @@ import static io.orkes.conductor.client.automator.TaskRunner.DOMAIN;
 public class TaskRunnerConfigurer {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskRunnerConfigurer.class);
 
+    private static final int OUTBOX_CAPACITY_BYTES = 64 * 1024 * 1024;
+    private static final long OUTBOX_FLUSH_INTERVAL_MILLIS = 2;
+    private static final long OUTBOX_REPLAY_INTERVAL_MILLIS = 5000;
+    // A day of attempts, the outbox is meant to outlive long outages
+    private static final int OUTBOX_MAX_REPLAY_ATTEMPTS = (int) (TimeUnit.DAYS.toMillis(1) / OUTBOX_REPLAY_INTERVAL_MILLIS);
+    private static final long MIN_UPDATE_FLUSH_MILLIS = 1000;
+
     private final EurekaClient eurekaClient;
     private final TaskClient taskClient;
 
@@ -52,13 +66,69 @@ public class TaskRunnerConfigurer {
 
     private final Map<String /* taskType */, Integer /* timeoutInMillisecond */> taskPollCount;
 
+    private final Map<String /* taskType */, Integer /* maxPrefetchCount */> taskPrefetchCount;
+
+    private final Map<String /* taskType */, Double /* permitsPerSecond */> taskRateLimit;
+
+    private final Map<String /* taskType */, Integer /* burstCapacity */> taskRateLimitBurst;
+
     private Integer defaultPollTimeout;
     private Integer defaultPollCount;
     private final int threadCount;
 
+    private final boolean useVirtualThreads;
+
+    private final int updateBatchSize;
+
+    private final int updateBatchLingerMillis;
+
+    private final int updateQueueCapacity;
+
+    private TaskUpdateBatcher taskUpdateBatcher;
+
+    private TaskUpdateStage taskUpdateStage;
+
     private final List<TaskRunner> taskRunners;
 
-    private ScheduledExecutorService scheduledExecutorService;
+    private final int pollerThreadCount;
+
+    private PollingEngine pollingEngine;
+
+    private final Map<String /* taskType */, Integer /* minThreadCount */> taskToMinThreadCount;
+
+    private final Map<String /* taskType */, Integer /* maxThreadCount */> taskToMaxThreadCount;
+
+    private final int autoscalingIntervalSeconds;
+
+    private ConcurrencyAutoscaler concurrencyAutoscaler;
+
+    private final boolean extendLeases;
+
+    private LeaseExtender leaseExtender;
+
+    private final Path outboxDirectory;
+
+    private TaskResultOutbox taskResultOutbox;
+
+    private final int sharedThreadCount;
+
+    private final Map<String /* taskType */, Integer /* minConcurrency */> taskMinConcurrency;
+
+    private final Map<String /* taskType */, Integer /* weight */> taskWeight;
+
+    private SharedTaskExecutor sharedTaskExecutor;
+
+    private final Map<String /* taskType */, Map<String /* domain */, Integer /* weight */>> taskDomainWeights;
+
+    private final double stuckTaskRatio;
+
+    private final int grpcLongPollTimeoutMillis;
+
+    private StuckTaskWatchdog stuckTaskWatchdog;
+
+    private final List<PooledPoller> pooledPollers = new CopyOnWriteArrayList<>();
+
+    private final List<ExecutorService> grpcExecutors = new CopyOnWriteArrayList<>();
 
     /**
      * @see TaskRunnerConfigurer.Builder
@@ -75,13 +145,33 @@ public class TaskRunnerConfigurer {
         this.taskToThreadCount = builder.taskToThreadCount;
         this.taskPollTimeout = builder.taskPollTimeout;
         this.taskPollCount = builder.taskPollCount;
+        this.taskPrefetchCount = builder.taskPrefetchCount;
+        this.taskRateLimit = builder.taskRateLimit;
+        this.taskRateLimitBurst = builder.taskRateLimitBurst;
         this.defaultPollTimeout = builder.defaultPollTimeout;
         this.defaultPollCount = builder.defaultPollCount;
         this.shutdownGracePeriodSeconds = builder.shutdownGracePeriodSeconds;
         this.workers = new LinkedList<>();
         this.threadCount = builder.threadCount;
+        this.useVirtualThreads = builder.useVirtualThreads;
+        this.updateBatchSize = builder.updateBatchSize;
+        this.updateBatchLingerMillis = builder.updateBatchLingerMillis;
+        this.updateQueueCapacity = builder.updateQueueCapacity;
+        this.pollerThreadCount = builder.pollerThreadCount;
+        this.taskToMinThreadCount = builder.taskToMinThreadCount;
+        this.taskToMaxThreadCount = builder.taskToMaxThreadCount;
+        this.autoscalingIntervalSeconds = builder.autoscalingIntervalSeconds;
+        this.extendLeases = builder.extendLeases;
+        this.outboxDirectory = builder.outboxDirectory;
+        this.sharedThreadCount = builder.sharedThreadCount;
+        this.taskMinConcurrency = builder.taskMinConcurrency;
+        this.taskWeight = builder.taskWeight;
+        this.stuckTaskRatio = builder.stuckTaskRatio;
+        this.grpcLongPollTimeoutMillis = builder.grpcLongPollTimeoutMillis;
+        this.taskDomainWeights = builder.taskDomainWeights;
         builder.workers.forEach(this.workers::add);
-        taskRunners = new LinkedList<>();
+        // Read by the watchdog while the workers are started
+        taskRunners = new CopyOnWriteArrayList<>();
     }
 
     /** Builder used to create the instances of TaskRunnerConfigurer */
@@ -94,6 +184,17 @@ public class TaskRunnerConfigurer {
         private int defaultPollTimeout = 100;
 
         private int defaultPollCount = 20;
+        private boolean useVirtualThreads = false;
+        private int updateBatchSize = 0;
+        private int updateBatchLingerMillis = 0;
+        private int updateQueueCapacity = 0;
+        private int pollerThreadCount = -1;
+        private int autoscalingIntervalSeconds = 10;
+        private boolean extendLeases = false;
+        private Path outboxDirectory;
+        private int sharedThreadCount = 0;
+        private double stuckTaskRatio = 0;
+        private int grpcLongPollTimeoutMillis = 0;
         private final Iterable<Worker> workers;
         private EurekaClient eurekaClient;
         private final TaskClient taskClient;
@@ -104,6 +205,22 @@ public class TaskRunnerConfigurer {
 
         private Map<String /* taskType */, Integer /* timeoutInMillisecond */> taskPollCount = new HashMap<>();
 
+        private Map<String /* taskType */, Integer /* maxPrefetchCount */> taskPrefetchCount = new HashMap<>();
+
+        private final Map<String /* taskType */, Double /* permitsPerSecond */> taskRateLimit = new HashMap<>();
+
+        private final Map<String /* taskType */, Integer /* burstCapacity */> taskRateLimitBurst = new HashMap<>();
+
+        private final Map<String /* taskType */, Integer /* minThreadCount */> taskToMinThreadCount = new HashMap<>();
+
+        private final Map<String /* taskType */, Integer /* maxThreadCount */> taskToMaxThreadCount = new HashMap<>();
+
+        private final Map<String /* taskType */, Integer /* minConcurrency */> taskMinConcurrency = new HashMap<>();
+
+        private final Map<String /* taskType */, Integer /* weight */> taskWeight = new HashMap<>();
+
+        private final Map<String /* taskType */, Map<String /* domain */, Integer /* weight */>> taskDomainWeights = new HashMap<>();
+
         public Builder(TaskClient taskClient, Iterable<Worker> workers) {
             Preconditions.checkNotNull(taskClient, "TaskClient cannot be null");
             Preconditions.checkNotNull(workers, "Workers cannot be null");
@@ -192,12 +309,22 @@ public class TaskRunnerConfigurer {
             return this;
         }
 
+        /**
+         * @param taskPollTimeout time in milliseconds the server holds a poll of the gRPC workers
+         *     of each task type. HTTP workers are polled by the shared polling engine without
+         *     waiting on the server, their idle polls are spaced by the poll backoff instead.
+         * @return Builder instance
+         */
         public TaskRunnerConfigurer.Builder withTaskPollTimeout(
                 Map<String, Integer> taskPollTimeout) {
             this.taskPollTimeout = taskPollTimeout;
             return this;
         }
 
+        /**
+         * @param taskPollTimeout default of {@link #withTaskPollTimeout(Map)}
+         * @return Builder instance
+         */
         public TaskRunnerConfigurer.Builder withTaskPollTimeout(Integer taskPollTimeout) {
             this.defaultPollTimeout = taskPollTimeout;
             return this;
@@ -213,6 +340,278 @@ public class TaskRunnerConfigurer {
             return this;
         }
 
+        /**
+         * Enables prefetching for the given task types: tasks are polled ahead of free threads and
+         * kept in a local buffer, so that a thread can start the next task without waiting for a
+         * poll. The buffer size adapts to the execution time and to the task's
+         * responseTimeoutSeconds so that buffered tasks do not time out, up to the given maximum.
+         * Only applies to HTTP polling.
+         *
+         * @param taskPrefetchCount maximum number of tasks buffered per task type
+         * @return Builder instance
+         */
+        public TaskRunnerConfigurer.Builder withTaskPrefetchCount(Map<String, Integer> taskPrefetchCount) {
+            this.taskPrefetchCount = taskPrefetchCount;
+            return this;
+        }
+
+        /**
+         * Limits the rate at which tasks of the given type are polled, so that no more tasks are
+         * leased than can be started. Can be overridden with the {@code
+         * conductor.worker.<taskType>.rateLimitPerSecond} and {@code rateLimitBurst} properties.
+         * Only applies to HTTP polling.
+         *
+         * @param taskType task type to limit
+         * @param permitsPerSecond tasks started per second
+         * @param burstCapacity tasks that can be started at once after an idle period, 0 to use
+         *     one second worth of tasks
+         * @return Builder instance
+         */
+        public TaskRunnerConfigurer.Builder withTaskRateLimit(
+                String taskType, double permitsPerSecond, int burstCapacity) {
+            if (permitsPerSecond <= 0) {
+                throw new IllegalArgumentException("Rate limit must be greater than 0");
+            }
+            if (burstCapacity < 0) {
+                throw new IllegalArgumentException("Burst capacity cannot be negative");
+            }
+            this.taskRateLimit.put(taskType, permitsPerSecond);
+            this.taskRateLimitBurst.put(taskType, burstCapacity);
+            return this;
+        }
+
+        /**
+         * @param useVirtualThreads when true, each task is executed on its own virtual thread and
+         *     the thread count is only used to limit the number of tasks executing concurrently.
+         *     Requires Java 21+, falls back to a fixed thread pool otherwise. Defaults to false.
+         * @return Builder instance
+         */
+        public TaskRunnerConfigurer.Builder withVirtualThreads(boolean useVirtualThreads) {
+            this.useVirtualThreads = useVirtualThreads;
+            return this;
+        }
+
+        /**
+         * Enables batching of task result updates. Results from all the workers are buffered and
+         * sent together once {@code maxBatchSize} results are pending or {@code lingerMillis}
+         * milliseconds after the first of them, whichever comes first. Worker threads do not wait
+         * for the batch to be sent. Disabled by default.
+         *
+         * <p>The calls of a batch are limited by the dispatcher of the HTTP client, 5 per host by
+         * default, which can be raised through {@link ApiClient#getHttpClient()}.
+         *
+         * @param maxBatchSize maximum number of results sent in one batch
+         * @param lingerMillis maximum time in milliseconds a result waits in the buffer
+         * @return Builder instance
+         */
+        public TaskRunnerConfigurer.Builder withTaskUpdateBatching(int maxBatchSize, int lingerMillis) {
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("Batch size cannot be less than 1");
+            }
+            if (lingerMillis < 1) {
+                throw new IllegalArgumentException("Linger time cannot be less than 1 ms");
+            }
+            this.updateBatchSize = maxBatchSize;
+            this.updateBatchLingerMillis = lingerMillis;
+            return this;
+        }
+
+        /**
+         * Hands task results to an asynchronous update stage instead of sending them on the worker
+         * thread. The worker thread is released as soon as the task is executed, and failed
+         * updates are retried on a timer with exponential backoff starting at {@link
+         * #withSleepWhenRetry(int)}, up to {@link #withUpdateRetryCount(int)} times. Disabled by
+         * default.
+         *
+         * @param queueCapacity maximum number of results waiting to be sent, workers block when
+         *     the queue is full
+         * @return Builder instance
+         */
+        public TaskRunnerConfigurer.Builder withAsyncTaskUpdates(int queueCapacity) {
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("Queue capacity cannot be less than 1");
+            }
+            this.updateQueueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param extendLeases when true, the lease of tasks still executing when they approach
+         *     their responseTimeoutSeconds is extended automatically, workers do not need to send
+         *     IN_PROGRESS updates themselves. Defaults to false.
+         * @return Builder instance
+         */
+        public TaskRunnerConfigurer.Builder withLeaseExtension(boolean extendLeases) {
+            this.extendLeases = extendLeases;
+            return this;
+        }
+
+        /**
+         * Persists task results in a journal in the given directory before sending them. Results
+         * that cannot be sent within the update retries are kept and sent again, in order, once
+         * the server is reachable, including after a restart of the process. Disabled by default.
+         *
+         * @param outboxDirectory directory holding the journal, must not be shared by other
+         *     processes
+         * @return Builder instance
+         */
+        public TaskRunnerConfigurer.Builder withTaskResultOutbox(Path outboxDirectory) {
+            Preconditions.checkNotNull(outboxDirectory, "Outbox directory cannot be null");
+            this.outboxDirectory = outboxDirectory;
+            return this;
+        }
+
+        /**
+         * @param pollerThreadCount number of threads polling for all the workers. Defaults to the
+         *     number of available processors (at least 2), capped at the number of workers.
+         * @return Builder instance
+         */
+        public TaskRunnerConfigurer.Builder withPollerThreadCount(int pollerThreadCount) {
+            if (pollerThreadCount < 1) {
+                throw new IllegalArgumentException("No. of poller threads cannot be less than 1");
+            }
+            this.pollerThreadCount = pollerThreadCount;
+            return this;
+        }
+
+        /**
+         * Lets the number of threads for the task type change at runtime between the given bounds,
+         * based on the size of the task queue on the server and on the observed execution time.
+         * The thread count of the task type is used as the starting point. Only applies to HTTP
+         * polling.
+         *
+         * @param taskType task type to autoscale
+         * @param minThreadCount lowest number of tasks executed concurrently
+         * @param maxThreadCount highest number of tasks executed concurrently
+         * @return Builder instance
+         * @see #withAutoscalingInterval(int)
+         */
+        public TaskRunnerConfigurer.Builder withConcurrencyAutoscaling(
+                String taskType, int minThreadCount, int maxThreadCount) {
+            if (minThreadCount < 1) {
+                throw new IllegalArgumentException("No. of threads cannot be less than 1");
+            }
+            if (maxThreadCount < minThreadCount) {
+                throw new IllegalArgumentException(
+                        "Max no. of threads cannot be less than the min no. of threads");
+            }
+            this.taskToMinThreadCount.put(taskType, minThreadCount);
+            this.taskToMaxThreadCount.put(taskType, maxThreadCount);
+            return this;
+        }
+
+        /**
+         * Executes the tasks of all the task types on a single work-stealing pool instead of a
+         * pool per task type, so that threads are not left idle by one task type while another
+         * has a backlog. The thread count of each task type becomes the most tasks of that type
+         * executed at once, and defaults to the size of the shared pool. Only applies to HTTP
+         * polling.
+         *
+         * @param sharedThreadCount number of threads in the shared pool
+         * @return Builder instance
+         * @see #withTaskFairShare(String, int, int)
+         */
+        public TaskRunnerConfigurer.Builder withSharedExecutor(int sharedThreadCount) {
+            if (sharedThreadCount < 1) {
+                throw new IllegalArgumentException("No. of threads cannot be less than 1");
+            }
+            this.sharedThreadCount = sharedThreadCount;
+            return this;
+        }
+
+        /**
+         * Sets how the threads of the shared pool are divided when several task types have tasks
+         * to execute. Task types not configured have no reserved thread and a weight of 1.
+         *
+         * @param taskType task type to configure
+         * @param minConcurrency threads reserved for the task type, even while it has no task
+         * @param weight share of the other threads relative to the other busy task types
+         * @return Builder instance
+         * @see #withSharedExecutor(int)
+         */
+        public TaskRunnerConfigurer.Builder withTaskFairShare(String taskType, int minConcurrency, int weight) {
+            if (minConcurrency < 0) {
+                throw new IllegalArgumentException("Min concurrency cannot be negative");
+            }
+            if (weight < 1) {
+                throw new IllegalArgumentException("Weight cannot be less than 1");
+            }
+            this.taskMinConcurrency.put(taskType, minConcurrency);
+            this.taskWeight.put(taskType, weight);
+            return this;
+        }
+
+        /**
+         * Polls the task type from several domains with a single runner, instead of the domain
+         * from taskToDomain or the {@code domain} property. The tasks to poll are split across the
+         * domains by weight, and the share of a domain that has no more tasks goes to the others
+         * in the same poll. All the domains share the threads of the task type. Only applies to
+         * HTTP polling.
+         *
+         * @param taskType task type to poll
+         * @param domainWeights weight of each domain, iterated in poll order, a null domain polls
+         *     the tasks without a domain
+         * @return Builder instance
+         */
+        public TaskRunnerConfigurer.Builder withTaskDomains(String taskType, Map<String, Integer> domainWeights) {
+            Preconditions.checkNotNull(domainWeights, "Domain weights cannot be null");
+            Map<String, Integer> weights = new LinkedHashMap<>(domainWeights);
+            // Fails fast on invalid weights
+            new WeightedDomains(weights);
+            this.taskDomainWeights.put(taskType, weights);
+            return this;
+        }
+
+        /**
+         * Polls over gRPC as soon as a thread is free instead of every polling interval: each
+         * free thread is a credit, and a poll for the credits not yet requested is kept pending on
+         * the server until tasks arrive or the timeout expires. Failed polls are retried with
+         * exponential backoff. Only applies to gRPC.
+         *
+         * @param timeoutMillis time the server holds a poll without tasks, e.g. 1000
+         * @return Builder instance
+         */
+        public TaskRunnerConfigurer.Builder withGrpcLongPoll(int timeoutMillis) {
+            if (timeoutMillis < 1) {
+                throw new IllegalArgumentException("Long poll timeout cannot be less than 1 ms");
+            }
+            this.grpcLongPollTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /**
+         * Reports the tasks still executing after the given fraction of their
+         * responseTimeoutSeconds, with the stack trace of the thread executing them, and counts
+         * them in the {@code task_stuck} metric. Disabled by default. Only applies to HTTP
+         * polling.
+         *
+         * @param responseTimeoutRatio fraction of the response timeout, e.g. 0.5 to report tasks
+         *     that used half of it
+         * @return Builder instance
+         * @see TaskRunnerConfigurer#getInFlightTasks()
+         */
+        public TaskRunnerConfigurer.Builder withStuckTaskDetection(double responseTimeoutRatio) {
+            if (responseTimeoutRatio <= 0) {
+                throw new IllegalArgumentException("Response timeout ratio must be greater than 0");
+            }
+            this.stuckTaskRatio = responseTimeoutRatio;
+            return this;
+        }
+
+        /**
+         * @param autoscalingIntervalSeconds seconds between two concurrency adjustments, defaults
+         *     to 10
+         * @return Builder instance
+         * @see #withConcurrencyAutoscaling(String, int, int)
+         */
+        public TaskRunnerConfigurer.Builder withAutoscalingInterval(int autoscalingIntervalSeconds) {
+            if (autoscalingIntervalSeconds < 1) {
+                throw new IllegalArgumentException("Autoscaling interval cannot be less than 1 second");
+            }
+            this.autoscalingIntervalSeconds = autoscalingIntervalSeconds;
+            return this;
+        }
+
         /**
          * Builds an instance of the TaskRunnerConfigurer.
          *
@@ -262,6 +661,24 @@ public class TaskRunnerConfigurer {
         return updateRetryCount;
     }
 
+    /**
+     * @return true if tasks are executed on virtual threads
+     */
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * @return number of threads polling for all the workers
+     */
+    public int getPollerThreadCount() {
+        if (pollerThreadCount > 0) {
+            return pollerThreadCount;
+        }
+        int defaultCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+        return Math.max(1, Math.min(workers.size(), defaultCount));
+    }
+
     /**
      * @return prefix used for worker names
      */
@@ -269,46 +686,171 @@ public class TaskRunnerConfigurer {
         return workerNamePrefix;
     }
 
+    /**
+     * @return tasks currently executed by the HTTP workers, a snapshot that is cheap to take and
+     *     does not block the executions
+     */
+    public List<InFlightTask> getInFlightTasks() {
+        List<InFlightTask> inFlightTasks = new ArrayList<>();
+        for (TaskRunner taskRunner : taskRunners) {
+            inFlightTasks.addAll(taskRunner.getInFlightTaskRegistry().getTasks());
+        }
+        return inFlightTasks;
+    }
+
     /**
      * Starts the polling. Must be called after {@link TaskRunnerConfigurer.Builder#build()} method.
      */
     public synchronized void init() {
-        this.scheduledExecutorService = Executors.newScheduledThreadPool(workers.size());
+        this.pollingEngine = new PollingEngine(getPollerThreadCount());
+        if (updateBatchSize > 0) {
+            this.taskUpdateBatcher = new TaskUpdateBatcher(taskClient, updateBatchSize, updateBatchLingerMillis);
+        }
+        if (updateQueueCapacity > 0) {
+            this.taskUpdateStage = new TaskUpdateStage("task-update-stage", updateQueueCapacity, updateRetryCount, sleepWhenRetry, taskUpdateSender());
+        }
+        if (outboxDirectory != null) {
+            try {
+                this.taskResultOutbox = new TaskResultOutbox(outboxDirectory, OUTBOX_CAPACITY_BYTES, OUTBOX_FLUSH_INTERVAL_MILLIS, OUTBOX_REPLAY_INTERVAL_MILLIS, OUTBOX_MAX_REPLAY_ATTEMPTS, taskUpdateSender());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to open the task result outbox in " + outboxDirectory, e);
+            }
+        }
+        if (extendLeases) {
+            this.leaseExtender = new LeaseExtender(taskUpdateSender());
+        }
+        if (!taskToMaxThreadCount.isEmpty()) {
+            if (apiClient.isUseGRPC()) {
+                LOGGER.warn("Concurrency autoscaling is not supported with gRPC, using static thread counts");
+            } else {
+                this.concurrencyAutoscaler = new ConcurrencyAutoscaler(taskClient, autoscalingIntervalSeconds);
+            }
+        }
+        if (sharedThreadCount > 0) {
+            if (apiClient.isUseGRPC()) {
+                LOGGER.warn("The shared executor is not supported with gRPC, using a pool per task type");
+            } else {
+                this.sharedTaskExecutor = new SharedTaskExecutor(sharedThreadCount, workerNamePrefix);
+            }
+        }
         if (apiClient.isUseGRPC()) {
             LOGGER.info("Using gRPC for task poll/update for ", workers.stream().map(worker -> worker.getTaskDefName()).collect(Collectors.toList()));
-            workers.forEach(worker -> scheduledExecutorService.submit(() -> this.startPooledGRPCWorker(worker)));
+            workers.forEach(this::startPooledGRPCWorker);
         } else {
-            workers.forEach(worker -> scheduledExecutorService.submit(() -> this.startWorker(worker)));
+            workers.forEach(this::startWorker);
+            this.stuckTaskWatchdog = new StuckTaskWatchdog(taskRunners, stuckTaskRatio);
         }
     }
 
     /**
      * Invoke this method within a PreDestroy block within your application to facilitate a graceful
      * shutdown of your worker, during process termination.
+     *
+     * <p>Polling stops right away so that no more tasks are leased. The tasks already polled are
+     * given the shutdown grace period to complete, then the pending task updates are flushed
+     * before the threads are released. Tasks still executing after the grace period are abandoned
+     * and counted in the {@code task_drain_abandoned} metric.
      */
     public void shutdown() {
-        this.taskRunners.forEach(taskRunner -> taskRunner.shutdown(shutdownGracePeriodSeconds));
-        this.scheduledExecutorService.shutdown();
+        long start = System.currentTimeMillis();
+        long deadline = start + TimeUnit.SECONDS.toMillis(shutdownGracePeriodSeconds);
+
+        // 1. Stop polling
+        this.pollingEngine.shutdown();
+        this.pooledPollers.forEach(PooledPoller::stopWorkers);
+        if (this.concurrencyAutoscaler != null) {
+            this.concurrencyAutoscaler.shutdown();
+        }
+        this.pollingEngine.awaitTermination(remainingMillis(deadline));
+
+        // 2. Complete the tasks already polled, all the workers share the grace period
+        int abandoned = 0;
+        for (TaskRunner taskRunner : taskRunners) {
+            abandoned += taskRunner.drain(remainingMillis(deadline));
+        }
+        for (ExecutorService executor : grpcExecutors) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(remainingMillis(deadline), TimeUnit.MILLISECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (PooledPoller pooledPoller : pooledPollers) {
+            if (!pooledPoller.awaitExecutions(remainingMillis(deadline))) {
+                LOGGER.warn("Executions or task updates still pending after the drain timeout");
+            }
+            pooledPoller.close();
+        }
+        if (this.sharedTaskExecutor != null) {
+            this.sharedTaskExecutor.shutdown(remainingMillis(deadline));
+        }
+        if (this.leaseExtender != null) {
+            this.leaseExtender.shutdown();
+        }
+        if (this.stuckTaskWatchdog != null) {
+            this.stuckTaskWatchdog.shutdown();
+        }
+
+        // 3. Flush the results of the completed tasks
+        if (this.taskUpdateStage != null) {
+            this.taskUpdateStage.shutdown(Math.max(MIN_UPDATE_FLUSH_MILLIS, remainingMillis(deadline)));
+        }
+        if (this.taskUpdateBatcher != null) {
+            this.taskUpdateBatcher.shutdown();
+        }
+        if (this.taskResultOutbox != null) {
+            this.taskResultOutbox.shutdown();
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        MetricsContainer.getWorkerDrainTimer().record(elapsed, TimeUnit.MILLISECONDS);
+        LOGGER.info("Workers drained in {} ms, {} tasks abandoned", elapsed, abandoned);
+    }
+
+    private static long remainingMillis(long deadline) {
+        return Math.max(0, deadline - System.currentTimeMillis());
     }
 
     private void startWorker(Worker worker) {
+        String taskType = worker.getTaskDefName();
+        SharedTaskExecutor.Share share = null;
+        if (sharedTaskExecutor != null) {
+            share = sharedTaskExecutor.register(
+                    taskType, taskMinConcurrency.getOrDefault(taskType, 0), taskWeight.getOrDefault(taskType, 1));
+        }
         final Integer threadCountForTask =
-                this.taskToThreadCount.getOrDefault(worker.getTaskDefName(), threadCount);
-        final Integer taskPollTimeout =
-                this.taskPollTimeout.getOrDefault(worker.getTaskDefName(), defaultPollTimeout);
+                this.taskToThreadCount.getOrDefault(taskType, share != null ? sharedThreadCount : threadCount);
         LOGGER.info("Domain map for tasks = {}", taskToDomain);
         final TaskRunner taskRunner =
-                new TaskRunner(
-                        worker,
-                        eurekaClient,
-                        taskClient,
-                        updateRetryCount,
-                        taskToDomain,
-                        workerNamePrefix,
-                        threadCountForTask,
-                        taskPollTimeout);
+                new TaskRunner.Builder(worker, taskClient)
+                        .withEurekaClient(eurekaClient)
+                        .withUpdateRetryCount(updateRetryCount)
+                        .withTaskToDomain(taskToDomain)
+                        .withWorkerNamePrefix(workerNamePrefix)
+                        .withThreadCount(threadCountForTask)
+                        // The engine threads are shared by all the task types and must not wait on
+                        // the server, an idle task type is delayed by its poll backoff instead
+                        .withTaskPollTimeout(0)
+                        .withVirtualThreads(useVirtualThreads)
+                        .withTaskUpdateBatcher(taskUpdateBatcher)
+                        .withTaskUpdateStage(taskUpdateStage)
+                        .withMaxPrefetchCount(taskPrefetchCount.getOrDefault(taskType, 0))
+                        .withLeaseExtender(leaseExtender)
+                        .withTaskResultOutbox(taskResultOutbox)
+                        .withRateLimit(taskRateLimit.getOrDefault(taskType, 0.0), taskRateLimitBurst.getOrDefault(taskType, 0))
+                        .withShare(share)
+                        .withWeightedDomains(taskDomainWeights.containsKey(taskType) ? new WeightedDomains(taskDomainWeights.get(taskType)) : null)
+                        .build();
         this.taskRunners.add(taskRunner);
-        taskRunner.pollAndExecute();
+        if (concurrencyAutoscaler != null && taskToMaxThreadCount.containsKey(taskType)) {
+            concurrencyAutoscaler.register(
+                    taskRunner, taskToMinThreadCount.get(taskType), taskToMaxThreadCount.get(taskType));
+        }
+        pollingEngine.register(taskRunner);
     }
 
     private void startPooledGRPCWorker(Worker worker) {
@@ -320,9 +862,44 @@ public class TaskRunnerConfigurer {
                 Optional.ofNullable(PropertyFactory.getString(taskType, DOMAIN, null))
                         .orElseGet(() -> Optional.ofNullable(PropertyFactory.getString(ALL_WORKERS, DOMAIN, null)).orElse(taskToDomain.get(taskType)));
         LOGGER.info("Starting gRPC worker: {} with {} threads", worker.getTaskDefName(), threadCountForTask);
+        if (worker instanceof BatchWorker) {
+            LOGGER.warn("Batch execution is not supported with gRPC, tasks of {} are executed one at a time", taskType);
+        }
+        if (taskDomainWeights.containsKey(taskType)) {
+            LOGGER.warn("Polling several domains is not supported with gRPC, tasks of {} are polled from domain {}", taskType, domain);
+        }
 
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCountForTask, threadCountForTask, 1, TimeUnit.MINUTES, new ArrayBlockingQueue<>(threadCountForTask * 100));
-        PooledPoller pooledPoller = new PooledPoller(apiClient, worker, domain, threadCountForTask, taskPollTimeout, executor, threadCountForTask);
+        ExecutorService executor = createGRPCExecutor(taskType, threadCountForTask);
+        PooledPoller pooledPoller = new PooledPoller(apiClient, worker, domain, threadCountForTask, taskPollTimeout, executor, threadCountForTask, taskUpdateStage, pollingEngine.getScheduler(), grpcLongPollTimeoutMillis);
+        this.pooledPollers.add(pooledPoller);
+        this.grpcExecutors.add(executor);
         pooledPoller.start();
     }
+
+    private Function<TaskResult, CompletableFuture<Void>> taskUpdateSender() {
+        if (taskUpdateBatcher != null) {
+            return taskUpdateBatcher::submit;
+        }
+        if (taskClient instanceof OrkesTaskClient) {
+            return ((OrkesTaskClient) taskClient)::updateTaskAsync;
+        }
+        return result -> {
+            taskClient.updateTask(result);
+            return CompletableFuture.completedFuture(null);
+        };
+    }
+
+    private ExecutorService createGRPCExecutor(String taskType, int threadCountForTask) {
+        if (useVirtualThreads) {
+            if (VirtualThreadExecutor.isSupported()) {
+                return new VirtualThreadExecutor(
+                        workerNamePrefix.replace("%d", "") + taskType + "-",
+                        threadCountForTask,
+                        (thread, error) -> LOGGER.error("Uncaught exception. Thread {} will exit now", thread, error));
+            }
+            LOGGER.warn("Virtual threads are not available on Java {} for gRPC worker {}, falling back to a thread pool",
+                    System.getProperty("java.version"), taskType);
+        }
+        return new ThreadPoolExecutor(threadCountForTask, threadCountForTask, 1, TimeUnit.MINUTES, new ArrayBlockingQueue<>(threadCountForTask * 100));
+    }
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.TaskClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+
+import com.squareup.okhttp.Dispatcher;
+
+/**
+ * Buffers task results coming from all the workers sharing the same client and sends them
+ * together, either when {@code maxBatchSize} results are pending or {@code lingerMillis} after the
+ * first result of the batch was queued.
+ *
+ * <p>The server does not expose a bulk update API, so a batch is sent as pipelined asynchronous
+ * calls over the client's connection pool rather than one blocking round trip per result. Every
+ * result gets its own future so that failures are still reported per task. How many of these calls
+ * are in flight at once is bounded by the OkHttp dispatcher of the client, which is left as
+ * configured by the caller.
+ */
+class TaskUpdateBatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskUpdateBatcher.class);
+
+    private final TaskClient taskClient;
+
+    private final int maxBatchSize;
+
+    private final ConcurrentLinkedQueue<PendingUpdate> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+
+    private final int lingerMillis;
+
+    private final AtomicBoolean lingerFlushScheduled = new AtomicBoolean(false);
+
+    private final ScheduledExecutorService flushScheduler;
+
+    TaskUpdateBatcher(TaskClient taskClient, int maxBatchSize, int lingerMillis) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize cannot be less than 1");
+        }
+        if (lingerMillis < 1) {
+            throw new IllegalArgumentException("lingerMillis cannot be less than 1");
+        }
+        this.taskClient = taskClient;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMillis = lingerMillis;
+        if (taskClient instanceof OrkesTaskClient) {
+            Dispatcher dispatcher = ((OrkesTaskClient) taskClient).getApiClient().getHttpClient().getDispatcher();
+            if (dispatcher.getMaxRequestsPerHost() < maxBatchSize) {
+                LOGGER.info(
+                        "The HTTP client sends at most {} requests per host at once, raise its dispatcher limits to send batches of {} results in one go",
+                        dispatcher.getMaxRequestsPerHost(),
+                        maxBatchSize);
+            }
+        }
+        this.flushScheduler =
+                Executors.newSingleThreadScheduledExecutor(
+                        new BasicThreadFactory.Builder()
+                                .namingPattern("task-update-batcher-%d")
+                                .daemon(true)
+                                .build());
+        LOGGER.info(
+                "Task updates will be sent in batches of up to {} results or every {} ms",
+                maxBatchSize,
+                lingerMillis);
+    }
+
+    /**
+     * Queues the result for the next batch.
+     *
+     * @return future completed when the server acknowledges this result, or completed
+     *     exceptionally if this result could not be updated.
+     */
+    CompletableFuture<Void> submit(TaskResult result) {
+        PendingUpdate update = new PendingUpdate(result);
+        pending.add(update);
+        if (pendingCount.incrementAndGet() >= maxBatchSize) {
+            flush();
+        } else if (lingerFlushScheduled.compareAndSet(false, true)) {
+            // First result since the last linger flush, it waits at most lingerMillis
+            try {
+                flushScheduler.schedule(this::lingerFlush, lingerMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                lingerFlushScheduled.set(false);
+                flush();
+            }
+        }
+        return update.future;
+    }
+
+    /**
+     * Queues the result for the batch following {@code delayMillis}, used to retry a failed update
+     * without blocking the caller.
+     *
+     * @return future completed when the server acknowledges this result, or completed
+     *     exceptionally if this result could not be updated.
+     */
+    CompletableFuture<Void> submit(TaskResult result, long delayMillis) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            flushScheduler.schedule(
+                    () -> submit(result).whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            future.completeExceptionally(error);
+                        } else {
+                            future.complete(null);
+                        }
+                    }),
+                    delayMillis,
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return submit(result);
+        }
+        return future;
+    }
+
+    /** Sends all the pending results. */
+    void flush() {
+        List<PendingUpdate> batch = new ArrayList<>(Math.min(pendingCount.get(), maxBatchSize));
+        PendingUpdate update;
+        while ((update = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(update);
+            if (batch.size() == maxBatchSize) {
+                send(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    void shutdown() {
+        flushScheduler.shutdown();
+        flush();
+    }
+
+    private void lingerFlush() {
+        // Cleared first, a result queued during the flush schedules the next one
+        lingerFlushScheduled.set(false);
+        try {
+            flush();
+        } catch (Throwable t) {
+            LOGGER.error("Error flushing task updates", t);
+        }
+    }
+
+    private void send(List<PendingUpdate> batch) {
+        LOGGER.trace("Sending a batch of {} task updates", batch.size());
+        for (PendingUpdate update : batch) {
+            try {
+                if (taskClient instanceof OrkesTaskClient) {
+                    ((OrkesTaskClient) taskClient)
+                            .updateTaskAsync(update.result)
+                            .whenComplete(
+                                    (ignored, error) -> {
+                                        if (error != null) {
+                                            update.future.completeExceptionally(error);
+                                        } else {
+                                            update.future.complete(null);
+                                        }
+                                    });
+                } else {
+                    taskClient.updateTask(update.result);
+                    update.future.complete(null);
+                }
+            } catch (Throwable t) {
+                update.future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static class PendingUpdate {
+        private final TaskResult result;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingUpdate(TaskResult result) {
+            this.result = result;
+        }
+    }
+}
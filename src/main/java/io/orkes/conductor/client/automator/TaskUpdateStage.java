@@ -0,0 +1,240 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.client.telemetry.MetricsContainer;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Sends task results to the server off the worker threads.
+ *
+ * <p>Results are accepted into a bounded queue, which blocks the submitting worker only when the
+ * queue is full. A dispatcher thread hands them to the sender, and failed updates are retried on a
+ * timer with exponential backoff and jitter instead of sleeping on the worker thread. The returned
+ * future completes once the server acknowledges the update, or exceptionally when the retries are
+ * exhausted.
+ *
+ * <p>Metrics: {@code task_update_queue_depth} (results not yet acknowledged), {@code
+ * task_update_retry} and {@code task_update_ack_time} (from submission to acknowledgement).
+ */
+public class TaskUpdateStage {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskUpdateStage.class);
+
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    private final String name;
+
+    private final Function<TaskResult, CompletableFuture<Void>> sender;
+
+    private final int maxRetries;
+
+    private final long retryDelayMillis;
+
+    private final BlockingQueue<PendingUpdate> queue;
+
+    private final AtomicInteger unacknowledged = new AtomicInteger(0);
+
+    private final ExecutorService dispatcher;
+
+    private final ScheduledExecutorService retryScheduler;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param name name of the stage, used for thread names and metrics
+     * @param queueCapacity maximum number of results waiting to be sent
+     * @param maxRetries number of times a failed update is retried
+     * @param retryDelayMillis delay before the first retry, doubled for every subsequent retry
+     * @param sender sends one result, the future must complete once the server has acknowledged it
+     */
+    public TaskUpdateStage(
+            String name,
+            int queueCapacity,
+            int maxRetries,
+            long retryDelayMillis,
+            Function<TaskResult, CompletableFuture<Void>> sender) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity cannot be less than 1");
+        }
+        this.name = name;
+        this.sender = sender;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryDelayMillis = Math.max(1, retryDelayMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.dispatcher =
+                Executors.newSingleThreadExecutor(
+                        new BasicThreadFactory.Builder()
+                                .namingPattern(name + "-dispatcher-%d")
+                                .daemon(true)
+                                .build());
+        this.retryScheduler =
+                Executors.newSingleThreadScheduledExecutor(
+                        new BasicThreadFactory.Builder()
+                                .namingPattern(name + "-retry-%d")
+                                .daemon(true)
+                                .build());
+        this.dispatcher.execute(this::dispatch);
+        LOGGER.info(
+                "Started task update stage {} with queue capacity {} and {} retries",
+                name,
+                queueCapacity,
+                this.maxRetries);
+    }
+
+    /**
+     * Queues the result to be sent to the server. Blocks only while the queue is full.
+     *
+     * @param taskType task type of the result, used for metrics
+     * @param result result to be sent
+     * @return future completed once the update is acknowledged by the server
+     */
+    public CompletableFuture<Void> submit(String taskType, TaskResult result) {
+        PendingUpdate update = new PendingUpdate(taskType, result);
+        if (!running) {
+            update.future.completeExceptionally(
+                    new IllegalStateException("Task update stage " + name + " is shut down"));
+            return update.future;
+        }
+        MetricsContainer.recordTaskUpdateQueueDepth(name, unacknowledged.incrementAndGet());
+        Uninterruptibles.putUninterruptibly(queue, update);
+        return update.future;
+    }
+
+    /**
+     * @return number of results submitted but not yet acknowledged or failed
+     */
+    public int getUnacknowledgedCount() {
+        return unacknowledged.get();
+    }
+
+    /**
+     * Stops accepting new results and waits for the pending ones to be acknowledged.
+     *
+     * @param timeoutMillis maximum time to wait for the pending results
+     * @return true if all the pending results were sent before the timeout
+     */
+    public boolean shutdown(long timeoutMillis) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (unacknowledged.get() > 0 && System.currentTimeMillis() < deadline) {
+            Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+        }
+        int remaining = unacknowledged.get();
+        if (remaining > 0) {
+            LOGGER.warn("Task update stage {} shut down with {} unacknowledged results", name, remaining);
+        }
+        dispatcher.shutdownNow();
+        retryScheduler.shutdownNow();
+        return remaining == 0;
+    }
+
+    private void dispatch() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingUpdate update = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (update != null) {
+                    send(update);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable t) {
+                LOGGER.error("Error dispatching task updates in {}", name, t);
+            }
+        }
+    }
+
+    private void send(PendingUpdate update) {
+        CompletableFuture<Void> sent;
+        try {
+            sent = sender.apply(update.result);
+        } catch (Throwable t) {
+            onFailure(update, t);
+            return;
+        }
+        sent.whenComplete(
+                (ignored, error) -> {
+                    if (error == null) {
+                        onAcknowledged(update);
+                    } else {
+                        onFailure(update, error);
+                    }
+                });
+    }
+
+    private void onAcknowledged(PendingUpdate update) {
+        MetricsContainer.getTaskUpdateAckTimer(update.taskType)
+                .record(System.nanoTime() - update.submittedAt, TimeUnit.NANOSECONDS);
+        MetricsContainer.recordTaskUpdateQueueDepth(name, unacknowledged.decrementAndGet());
+        update.future.complete(null);
+    }
+
+    private void onFailure(PendingUpdate update, Throwable error) {
+        if (update.attempt < maxRetries && !retryScheduler.isShutdown()) {
+            update.attempt++;
+            long delay = retryDelay(update.attempt);
+            LOGGER.debug(
+                    "Retrying update of task {} in {} ms (attempt {}): {}",
+                    update.result.getTaskId(),
+                    delay,
+                    update.attempt,
+                    error.getMessage());
+            MetricsContainer.incrementTaskUpdateRetryCount(update.taskType);
+            try {
+                retryScheduler.schedule(() -> send(update), delay, TimeUnit.MILLISECONDS);
+                return;
+            } catch (Exception e) {
+                LOGGER.warn("Unable to schedule retry for task {}", update.result.getTaskId());
+            }
+        }
+        MetricsContainer.recordTaskUpdateQueueDepth(name, unacknowledged.decrementAndGet());
+        update.future.completeExceptionally(error);
+    }
+
+    private long retryDelay(int attempt) {
+        long backoff = Math.min(MAX_RETRY_DELAY_MILLIS, retryDelayMillis << Math.min(attempt - 1, 20));
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+
+    private static class PendingUpdate {
+        private final String taskType;
+        private final TaskResult result;
+        private final long submittedAt = System.nanoTime();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private int attempt = 0;
+
+        private PendingUpdate(String taskType, TaskResult result) {
+            this.taskType = taskType;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+/**
+ * Token bucket limiting the number of tasks a {@link TaskRunner} leases per second.
+ *
+ * <p>Tokens are added continuously at {@code permitsPerSecond} up to the burst capacity, each
+ * polled task takes one. A rate of 0 or less disables the limit.
+ */
+class TokenBucket {
+
+    private volatile double permitsPerSecond;
+
+    private int burstCapacity;
+
+    private double tokens;
+
+    private long lastRefillNanos;
+
+    TokenBucket(double permitsPerSecond, int burstCapacity) {
+        this.lastRefillNanos = System.nanoTime();
+        update(permitsPerSecond, burstCapacity);
+        this.tokens = this.burstCapacity;
+    }
+
+    /**
+     * @param burstCapacity maximum number of tokens accumulated, 0 or less to use one second worth
+     *     of tokens
+     */
+    synchronized void update(double permitsPerSecond, int burstCapacity) {
+        refill();
+        this.permitsPerSecond = permitsPerSecond;
+        this.burstCapacity =
+                burstCapacity > 0 ? burstCapacity : (int) Math.max(1, Math.ceil(permitsPerSecond));
+        this.tokens = Math.min(tokens, this.burstCapacity);
+    }
+
+    boolean isLimited() {
+        return permitsPerSecond > 0;
+    }
+
+    /**
+     * @return number of tokens taken, at most {@code count}
+     */
+    synchronized int tryAcquire(int count) {
+        if (!isLimited()) {
+            return count;
+        }
+        refill();
+        int granted = (int) Math.min(count, Math.floor(tokens));
+        tokens -= granted;
+        return granted;
+    }
+
+    /** Gives back tokens that were not used, e.g. when a poll returned fewer tasks. */
+    synchronized void refund(int count) {
+        if (isLimited()) {
+            tokens = Math.min(burstCapacity, tokens + count);
+        }
+    }
+
+    /**
+     * @return time in milliseconds until a token is available, 0 if one is available now
+     */
+    synchronized long millisUntilAvailable() {
+        if (!isLimited()) {
+            return 0;
+        }
+        refill();
+        if (tokens >= 1) {
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * 1000 / permitsPerSecond);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (permitsPerSecond > 0) {
+            tokens = Math.min(burstCapacity, tokens + (now - lastRefillNanos) * permitsPerSecond / 1_000_000_000);
+        }
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.spectator.api.Id;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.Spectator;
+import com.netflix.spectator.api.patterns.PolledMeter;
+
+/**
+ * Runs every submitted task on its own virtual thread. Concurrency is not bounded here, callers
+ * are expected to limit the number of in-flight tasks (e.g. using the worker's permits).
+ *
+ * <p>The executor publishes the same gauges as {@link
+ * com.netflix.spectator.api.patterns.ThreadPoolMonitor} so that virtual and platform thread pools
+ * can be compared side by side. Virtual threads require Java 21+, callers check {@link
+ * #isSupported()} before creating an instance.
+ */
+class VirtualThreadExecutor extends AbstractExecutorService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+    private static final Registry REGISTRY = Spectator.globalRegistry();
+
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR =
+            findMethod(
+                    java.util.concurrent.Executors.class,
+                    "newThreadPerTaskExecutor",
+                    ThreadFactory.class);
+
+    private final ExecutorService delegate;
+    private final AtomicLong submitted = new AtomicLong(0);
+    private final AtomicLong completed = new AtomicLong(0);
+    private final AtomicLong active = new AtomicLong(0);
+    // PolledMeter only keeps weak references, the fixed values must be referenced here
+    private final AtomicLong maxThreads = new AtomicLong(0);
+    private final AtomicLong carrierThreads = new AtomicLong(0);
+
+    /**
+     * @throws UnsupportedOperationException if {@link #isSupported()} is false
+     */
+    VirtualThreadExecutor(
+            String threadNamePrefix,
+            int maxConcurrency,
+            Thread.UncaughtExceptionHandler uncaughtExceptionHandler) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads are not supported by this JVM: "
+                            + System.getProperty("java.version"));
+        }
+        this.delegate =
+                newThreadPerTaskExecutor(
+                        newVirtualThreadFactory(threadNamePrefix, uncaughtExceptionHandler));
+        this.maxThreads.set(maxConcurrency);
+        this.carrierThreads.set(carrierParallelism());
+        monitor(threadNamePrefix);
+    }
+
+    /**
+     * @return true if the running JVM can create virtual threads
+     */
+    static boolean isSupported() {
+        return OF_VIRTUAL != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        submitted.incrementAndGet();
+        delegate.execute(
+                () -> {
+                    active.incrementAndGet();
+                    try {
+                        command.run();
+                    } finally {
+                        active.decrementAndGet();
+                        completed.incrementAndGet();
+                    }
+                });
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    long getActiveCount() {
+        return active.get();
+    }
+
+    private void monitor(String threadPoolName) {
+        // Same meter names and id tag as ThreadPoolMonitor
+        PolledMeter.using(REGISTRY)
+                .withId(meterId("threadpool.currentThreadsBusy", threadPoolName))
+                .monitorValue(active);
+        PolledMeter.using(REGISTRY)
+                .withId(meterId("threadpool.taskCount", threadPoolName))
+                .monitorMonotonicCounter(submitted);
+        PolledMeter.using(REGISTRY)
+                .withId(meterId("threadpool.completedTaskCount", threadPoolName))
+                .monitorMonotonicCounter(completed);
+        PolledMeter.using(REGISTRY)
+                .withId(meterId("threadpool.maxThreads", threadPoolName))
+                .monitorValue(maxThreads);
+        PolledMeter.using(REGISTRY)
+                .withId(meterId("threadpool.carrierThreads", threadPoolName))
+                .monitorValue(carrierThreads);
+    }
+
+    private static Id meterId(String name, String threadPoolName) {
+        return REGISTRY.createId(name).withTag("id", threadPoolName).withTag("type", "virtual");
+    }
+
+    private static long carrierParallelism() {
+        String parallelism = System.getProperty("jdk.virtualThreadScheduler.parallelism");
+        if (parallelism != null) {
+            try {
+                return Long.parseLong(parallelism);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(
+            String threadNamePrefix, Thread.UncaughtExceptionHandler uncaughtExceptionHandler) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder =
+                    builderClass
+                            .getMethod("name", String.class, long.class)
+                            .invoke(builder, threadNamePrefix, 0L);
+            builder =
+                    builderClass
+                            .getMethod(
+                                    "uncaughtExceptionHandler",
+                                    Thread.UncaughtExceptionHandler.class)
+                            .invoke(builder, uncaughtExceptionHandler);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create virtual thread factory", e);
+        }
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create virtual thread executor", e);
+        }
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            LOGGER.debug("{}.{} is not available", clazz.getSimpleName(), name);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the tasks polled by a {@link TaskRunner} across several domains according to their
+ * weights.
+ *
+ * <p>Each task to poll is given to a domain by smooth weighted round-robin, so that a domain with
+ * weight 3 gets three tasks for every task of a domain with weight 1, and a domain with a small
+ * weight still gets its turn when only one task is polled at a time.
+ */
+class WeightedDomains {
+
+    private final List<String> domains;
+
+    private final int[] weights;
+
+    private final int[] current;
+
+    /**
+     * @param domainWeights weight of each domain, in poll order, a null domain is the default one
+     */
+    WeightedDomains(Map<String, Integer> domainWeights) {
+        if (domainWeights.isEmpty()) {
+            throw new IllegalArgumentException("At least one domain is required");
+        }
+        this.domains = Collections.unmodifiableList(new ArrayList<>(domainWeights.keySet()));
+        this.weights = new int[domains.size()];
+        this.current = new int[domains.size()];
+        int index = 0;
+        for (Integer weight : domainWeights.values()) {
+            if (weight == null || weight < 1) {
+                throw new IllegalArgumentException("Domain weight cannot be less than 1");
+            }
+            weights[index++] = weight;
+        }
+    }
+
+    List<String> getDomains() {
+        return domains;
+    }
+
+    /**
+     * @param count tasks to split
+     * @param eligible domains that can receive tasks, indexed like {@link #getDomains()}
+     * @return tasks to poll from each domain, all 0 if no domain is eligible
+     */
+    synchronized int[] allocate(int count, boolean[] eligible) {
+        int[] allocation = new int[domains.size()];
+        int totalWeight = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (eligible[i]) {
+                totalWeight += weights[i];
+            }
+        }
+        if (totalWeight == 0) {
+            return allocation;
+        }
+        for (int n = 0; n < count; n++) {
+            int selected = -1;
+            for (int i = 0; i < weights.length; i++) {
+                if (!eligible[i]) {
+                    continue;
+                }
+                current[i] += weights[i];
+                if (selected < 0 || current[i] > current[selected]) {
+                    selected = i;
+                }
+            }
+            current[selected] -= totalWeight;
+            allocation[selected]++;
+        }
+        return allocation;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.client.config.PropertyFactory;
+import com.netflix.conductor.client.worker.Worker;
+
+import static io.orkes.conductor.client.automator.TaskRunner.ALL_WORKERS;
+import static io.orkes.conductor.client.automator.TaskRunner.DOMAIN;
+
+/**
+ * Snapshot of the configuration of a {@link Worker} used by the poll loop.
+ *
+ * <p>The values come from {@link PropertyFactory} and from the worker itself, which are too costly
+ * to query on every poll. They are resolved when the snapshot is created and then every {@link
+ * #REFRESH_INTERVAL_MILLIS} by {@link #refresh()}, so a change (e.g. pausing a worker) takes effect
+ * within that interval. The identity is resolved only once since the default implementation looks
+ * up the host name.
+ */
+class WorkerConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerConfig.class);
+
+    static final long REFRESH_INTERVAL_MILLIS = 1000;
+
+    static final String OVERRIDE_DISCOVERY = "pollOutOfDiscovery";
+
+    static final String RATE_LIMIT_PER_SECOND = "rateLimitPerSecond";
+
+    static final String RATE_LIMIT_BURST = "rateLimitBurst";
+
+    static final String MAX_IDLE_POLL_DELAY = "maxIdlePollDelay";
+
+    private final Worker worker;
+
+    private final String taskType;
+
+    private final Map<String, String> taskToDomain;
+
+    private final String identity;
+
+    private final double defaultRateLimitPerSecond;
+
+    private final int defaultRateLimitBurst;
+
+    private volatile String domain;
+
+    private volatile boolean paused;
+
+    private volatile boolean discoveryOverride;
+
+    private volatile int pollingInterval;
+
+    private volatile double rateLimitPerSecond;
+
+    private volatile int rateLimitBurst;
+
+    private volatile int maxIdlePollDelay;
+
+    WorkerConfig(Worker worker, Map<String, String> taskToDomain) {
+        this(worker, taskToDomain, 0, 0);
+    }
+
+    /**
+     * @param defaultRateLimitPerSecond tasks leased per second when no property is set, 0 for no
+     *     limit
+     * @param defaultRateLimitBurst burst capacity when no property is set
+     */
+    WorkerConfig(
+            Worker worker,
+            Map<String, String> taskToDomain,
+            double defaultRateLimitPerSecond,
+            int defaultRateLimitBurst) {
+        this.worker = worker;
+        this.taskType = worker.getTaskDefName();
+        this.taskToDomain = taskToDomain;
+        this.defaultRateLimitPerSecond = defaultRateLimitPerSecond;
+        this.defaultRateLimitBurst = defaultRateLimitBurst;
+        this.identity = worker.getIdentity();
+        this.domain = resolveDomain();
+        this.paused = worker.paused();
+        this.discoveryOverride = resolveDiscoveryOverride();
+        this.pollingInterval = worker.getPollingInterval();
+        this.rateLimitPerSecond = resolveRateLimit();
+        this.rateLimitBurst = resolveRateLimitBurst();
+        this.maxIdlePollDelay = resolveMaxIdlePollDelay();
+    }
+
+    /** Resolves all the values again, keeping the previous ones if the resolution fails. */
+    void refresh() {
+        try {
+            this.domain = resolveDomain();
+            this.paused = worker.paused();
+            this.discoveryOverride = resolveDiscoveryOverride();
+            this.pollingInterval = worker.getPollingInterval();
+            this.rateLimitPerSecond = resolveRateLimit();
+            this.rateLimitBurst = resolveRateLimitBurst();
+            this.maxIdlePollDelay = resolveMaxIdlePollDelay();
+        } catch (Exception e) {
+            LOGGER.warn("Unable to refresh the configuration of worker {}: {}", taskType, e.getMessage());
+        }
+    }
+
+    private String resolveDomain() {
+        //1. Is there a worker level override?
+        String domain = PropertyFactory.getString(taskType, DOMAIN, null);
+        if (domain == null) {
+            //2. If not, is there a blanket override?
+            domain = PropertyFactory.getString(ALL_WORKERS, DOMAIN, null);
+        }
+        if (domain == null) {
+            //3. was it supplied as part of the config?
+            domain = taskToDomain.get(taskType);
+        }
+        return domain;
+    }
+
+    private boolean resolveDiscoveryOverride() {
+        Boolean override = PropertyFactory.getBoolean(taskType, OVERRIDE_DISCOVERY, null);
+        if (override == null) {
+            override = PropertyFactory.getBoolean(ALL_WORKERS, OVERRIDE_DISCOVERY, false);
+        }
+        return Boolean.TRUE.equals(override);
+    }
+
+    private double resolveRateLimit() {
+        String value = PropertyFactory.getString(taskType, RATE_LIMIT_PER_SECOND, null);
+        if (value == null) {
+            value = PropertyFactory.getString(ALL_WORKERS, RATE_LIMIT_PER_SECOND, null);
+        }
+        if (value == null) {
+            return defaultRateLimitPerSecond;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignoring invalid {} '{}' for worker {}", RATE_LIMIT_PER_SECOND, value, taskType);
+            return defaultRateLimitPerSecond;
+        }
+    }
+
+    private int resolveRateLimitBurst() {
+        int burst = PropertyFactory.getInteger(taskType, RATE_LIMIT_BURST, 0);
+        if (burst == 0) {
+            burst = PropertyFactory.getInteger(ALL_WORKERS, RATE_LIMIT_BURST, 0);
+        }
+        return burst == 0 ? defaultRateLimitBurst : burst;
+    }
+
+    private int resolveMaxIdlePollDelay() {
+        int delay = PropertyFactory.getInteger(taskType, MAX_IDLE_POLL_DELAY, 0);
+        if (delay == 0) {
+            delay = PropertyFactory.getInteger(ALL_WORKERS, MAX_IDLE_POLL_DELAY, 0);
+        }
+        // By default an idle worker polls between one and two polling intervals apart
+        return delay <= 0 ? 2 * pollingInterval : delay;
+    }
+
+    String getDomain() {
+        return domain;
+    }
+
+    boolean isPaused() {
+        return paused;
+    }
+
+    boolean isDiscoveryOverride() {
+        return discoveryOverride;
+    }
+
+    String getIdentity() {
+        return identity;
+    }
+
+    int getPollingInterval() {
+        return pollingInterval;
+    }
+
+    /**
+     * @return upper bound in milliseconds of the delay between the polls of an idle worker
+     */
+    int getMaxIdlePollDelay() {
+        return maxIdlePollDelay;
+    }
+
+    /**
+     * @return tasks leased per second, 0 or less when not limited
+     */
+    double getRateLimitPerSecond() {
+        return rateLimitPerSecond;
+    }
+
+    int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+}
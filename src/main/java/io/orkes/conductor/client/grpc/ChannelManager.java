@@ -12,56 +12,339 @@
  */
 package io.orkes.conductor.client.grpc;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 
 import com.netflix.conductor.common.config.ObjectMapperProvider;
 
 import io.orkes.conductor.client.ApiClient;
 
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
 import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
 import io.grpc.netty.NettyChannelBuilder;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Shares the gRPC channels of the clients and pollers connecting to the same server.
+ *
+ * <p>Channels are keyed by host, port, TLS setting and executor size, and reference counted:
+ * {@link #getChannel(ApiClient)} returns a reference to the shared channel, and shutting the
+ * reference down releases it. The channel, and its executor, are closed when the last reference
+ * is released. All the channels of a transport run on a single event loop group with a thread per
+ * core, which is closed with the last channel using it.
+ *
+ * <p>The native epoll transport is used when {@link ApiClient#getGrpcTransport()} allows it and
+ * {@code netty-transport-native-epoll} is on the classpath and available. Its classes are loaded
+ * by reflection since the dependency is optional.
+ *
+ * <p>Each channel has an update window, bounding the task updates the workers pipeline over its
+ * connection to {@link #MAX_PENDING_UPDATES}, the concurrent stream limit most servers advertise.
+ */
+@Slf4j
 public abstract class ChannelManager {
 
+    static final int MAX_PENDING_UPDATES = 100;
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private static final Map<String, SharedChannel> CHANNELS = new HashMap<>();
+
+    private static final String EPOLL_PACKAGE = "io.netty.channel.epoll.";
+
+    private static final Map<GrpcTransport, EventLoopGroup> EVENT_LOOP_GROUPS = new EnumMap<>(GrpcTransport.class);
+
+    private static Boolean epollAvailable;
+
+    private static Map<String, Object> serviceConfig;
+
     private ChannelManager() {}
 
-    public static ManagedChannel getChannel(ApiClient apiClient) {
-        String host = apiClient.getGrpcHost();
-        int port = apiClient.getGrpcPort();
-        boolean useSSL = apiClient.useSSL();
-        Map<String, Object> serviceConfig = new HashMap<>();
-        try {
-            serviceConfig = new ObjectMapperProvider().getObjectMapper().readValue(ChannelManager.class.getResourceAsStream("/service_config.json"), Map.class);
-        } catch (Exception e) {
-            throw new RuntimeException("Unable to find the service config", e);
-        }
-        NettyChannelBuilder channelBuilder =
-                NettyChannelBuilder.forAddress(host, port)
-                        .eventLoopGroup(new NioEventLoopGroup())
-                        .channelType(NioSocketChannel.class)
-                        .enableRetry()
-                        .withOption(
-                                ChannelOption.CONNECT_TIMEOUT_MILLIS,
-                                (int) TimeUnit.SECONDS.toMillis(5000))
-                        .defaultServiceConfig(serviceConfig)
-                        .keepAliveTime(10, TimeUnit.MINUTES)
-                        .defaultLoadBalancingPolicy("round_robin");
-        if(apiClient.getExecutorThreadCount() > 0) {
-            channelBuilder = channelBuilder.executor(Executors.newFixedThreadPool(apiClient.getExecutorThreadCount()));
-        }
-
-        if (!useSSL) {
-            channelBuilder = channelBuilder.usePlaintext();
-        } else {
-            channelBuilder = channelBuilder.useTransportSecurity();
-        }
-
-        return channelBuilder.build();
+    /**
+     * @return a reference to the channel shared by the clients of the same server, to be shut down
+     *     when no longer used
+     */
+    public static synchronized ManagedChannel getChannel(ApiClient apiClient) {
+        GrpcTransport transport = resolveTransport(apiClient.getGrpcTransport());
+        String key = apiClient.getGrpcHost() + ":" + apiClient.getGrpcPort()
+                + ":" + apiClient.useSSL() + ":" + apiClient.getExecutorThreadCount() + ":" + transport;
+        SharedChannel sharedChannel = CHANNELS.get(key);
+        if (sharedChannel == null) {
+            sharedChannel = new SharedChannel(key, apiClient, transport);
+            CHANNELS.put(key, sharedChannel);
+        }
+        sharedChannel.references++;
+        return new ChannelReference(sharedChannel);
+    }
+
+    /**
+     * @return the update window shared by the references to the channel, or a window of its own
+     *     for a channel not obtained from {@link #getChannel(ApiClient)}
+     */
+    static Semaphore getUpdateWindow(ManagedChannel channel) {
+        if (channel instanceof ChannelReference) {
+            return ((ChannelReference) channel).sharedChannel.updateWindow;
+        }
+        return new Semaphore(MAX_PENDING_UPDATES);
+    }
+
+    /**
+     * @return number of channels currently open
+     */
+    public static synchronized int getOpenChannelCount() {
+        return CHANNELS.size();
+    }
+
+    private static synchronized void release(SharedChannel sharedChannel) {
+        if (--sharedChannel.references > 0) {
+            return;
+        }
+        CHANNELS.remove(sharedChannel.key);
+        EventLoopGroup unusedEventLoopGroup = null;
+        if (CHANNELS.values().stream().noneMatch(channel -> channel.transport == sharedChannel.transport)) {
+            unusedEventLoopGroup = EVENT_LOOP_GROUPS.remove(sharedChannel.transport);
+        }
+        sharedChannel.channel.shutdown();
+        closeWhenTerminated(sharedChannel, unusedEventLoopGroup);
+    }
+
+    /** The calls still running on the channel need its executor and event loop to complete. */
+    private static void closeWhenTerminated(SharedChannel sharedChannel, EventLoopGroup unusedEventLoopGroup) {
+        Thread closer = new Thread(() -> {
+            try {
+                if (!sharedChannel.channel.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("gRPC channel {} not terminated after {} s, closing it now", sharedChannel.key, CLOSE_TIMEOUT_SECONDS);
+                    sharedChannel.channel.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                sharedChannel.channel.shutdownNow();
+                Thread.currentThread().interrupt();
+            } finally {
+                if (sharedChannel.executor != null) {
+                    sharedChannel.executor.shutdown();
+                }
+                if (unusedEventLoopGroup != null) {
+                    unusedEventLoopGroup.shutdownGracefully(0, CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                }
+            }
+        }, "grpc-channel-closer");
+        closer.setDaemon(true);
+        closer.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getServiceConfig() {
+        if (serviceConfig == null) {
+            try {
+                serviceConfig = new ObjectMapperProvider().getObjectMapper().readValue(ChannelManager.class.getResourceAsStream("/service_config.json"), Map.class);
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to find the service config", e);
+            }
+        }
+        return new HashMap<>(serviceConfig);
+    }
+
+    /**
+     * @return the transport to use, {@link GrpcTransport#NIO} or {@link GrpcTransport#EPOLL}
+     */
+    static GrpcTransport resolveTransport(GrpcTransport requested) {
+        if (requested == GrpcTransport.NIO) {
+            return GrpcTransport.NIO;
+        }
+        if (isEpollAvailable()) {
+            return GrpcTransport.EPOLL;
+        }
+        if (requested == GrpcTransport.EPOLL) {
+            log.warn("The epoll transport is not available, using NIO for the gRPC channels");
+        }
+        return GrpcTransport.NIO;
+    }
+
+    private static boolean isEpollAvailable() {
+        if (epollAvailable == null) {
+            try {
+                epollAvailable = (Boolean) Class.forName(EPOLL_PACKAGE + "Epoll").getMethod("isAvailable").invoke(null);
+            } catch (Throwable t) {
+                // Not on the classpath, or the native library does not match the platform
+                epollAvailable = false;
+            }
+        }
+        return epollAvailable;
+    }
+
+    private static EventLoopGroup getEventLoopGroup(GrpcTransport transport) {
+        return EVENT_LOOP_GROUPS.computeIfAbsent(transport, ChannelManager::newEventLoopGroup);
+    }
+
+    private static EventLoopGroup newEventLoopGroup(GrpcTransport transport) {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        ThreadFactory threadFactory = new DefaultThreadFactory("grpc-" + transport.name().toLowerCase() + "-event-loop", true);
+        if (transport == GrpcTransport.EPOLL) {
+            try {
+                return (EventLoopGroup) Class.forName(EPOLL_PACKAGE + "EpollEventLoopGroup")
+                        .getConstructor(int.class, ThreadFactory.class)
+                        .newInstance(threadCount, threadFactory);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to create the epoll event loop group", e);
+            }
+        }
+        return new NioEventLoopGroup(threadCount, threadFactory);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Channel> getChannelType(GrpcTransport transport) {
+        if (transport == GrpcTransport.EPOLL) {
+            try {
+                return (Class<? extends Channel>) Class.forName(EPOLL_PACKAGE + "EpollSocketChannel");
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Unable to load the epoll socket channel", e);
+            }
+        }
+        return NioSocketChannel.class;
+    }
+
+    private static class SharedChannel {
+
+        private final String key;
+
+        private final GrpcTransport transport;
+
+        private final ManagedChannel channel;
+
+        private final ExecutorService executor;
+
+        private final Semaphore updateWindow = new Semaphore(MAX_PENDING_UPDATES);
+
+        private int references;
+
+        private SharedChannel(String key, ApiClient apiClient, GrpcTransport transport) {
+            this.key = key;
+            this.transport = transport;
+            NettyChannelBuilder channelBuilder =
+                    NettyChannelBuilder.forAddress(apiClient.getGrpcHost(), apiClient.getGrpcPort())
+                            .eventLoopGroup(getEventLoopGroup(transport))
+                            .channelType(getChannelType(transport))
+                            .enableRetry()
+                            .withOption(
+                                    ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                                    (int) TimeUnit.SECONDS.toMillis(5000))
+                            .defaultServiceConfig(getServiceConfig())
+                            .keepAliveTime(10, TimeUnit.MINUTES)
+                            .defaultLoadBalancingPolicy("round_robin");
+            if (apiClient.getExecutorThreadCount() > 0) {
+                this.executor = Executors.newFixedThreadPool(
+                        apiClient.getExecutorThreadCount(),
+                        new BasicThreadFactory.Builder()
+                                .namingPattern("grpc-executor-%d")
+                                .daemon(true)
+                                .build());
+                channelBuilder = channelBuilder.executor(executor);
+            } else {
+                this.executor = null;
+            }
+
+            if (!apiClient.useSSL()) {
+                channelBuilder = channelBuilder.usePlaintext();
+            } else {
+                channelBuilder = channelBuilder.useTransportSecurity();
+            }
+            this.channel = channelBuilder.build();
+        }
+    }
+
+    /**
+     * A reference to a shared channel. Shutting it down releases the reference, it is terminated
+     * once released unless it was the last one, which waits for the channel itself.
+     */
+    private static class ChannelReference extends ManagedChannel {
+
+        private final SharedChannel sharedChannel;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ChannelReference(SharedChannel sharedChannel) {
+            this.sharedChannel = sharedChannel;
+        }
+
+        @Override
+        public ManagedChannel shutdown() {
+            if (released.compareAndSet(false, true)) {
+                release(sharedChannel);
+            }
+            return this;
+        }
+
+        @Override
+        public ManagedChannel shutdownNow() {
+            // The calls of the other references must not be cancelled
+            return shutdown();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return released.get();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return released.get() && (!sharedChannel.channel.isShutdown() || sharedChannel.channel.isTerminated());
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            if (!released.get()) {
+                // Not shut down, it cannot terminate while waiting
+                return false;
+            }
+            return !sharedChannel.channel.isShutdown() || sharedChannel.channel.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
+                MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
+            return sharedChannel.channel.newCall(methodDescriptor, callOptions);
+        }
+
+        @Override
+        public String authority() {
+            return sharedChannel.channel.authority();
+        }
+
+        @Override
+        public ConnectivityState getState(boolean requestConnection) {
+            return sharedChannel.channel.getState(requestConnection);
+        }
+
+        @Override
+        public void notifyWhenStateChanged(ConnectivityState source, Runnable callback) {
+            sharedChannel.channel.notifyWhenStateChanged(source, callback);
+        }
+
+        @Override
+        public void resetConnectBackoff() {
+            sharedChannel.channel.resetConnectBackoff();
+        }
+
+        @Override
+        public void enterIdle() {
+            sharedChannel.channel.enterIdle();
+        }
     }
 }
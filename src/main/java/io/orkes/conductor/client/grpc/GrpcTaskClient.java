@@ -14,6 +14,7 @@ package io.orkes.conductor.client.grpc;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import com.netflix.conductor.common.metadata.tasks.Task;
 import com.netflix.conductor.common.metadata.tasks.TaskResult;
@@ -26,6 +27,9 @@ import io.orkes.conductor.proto.ProtoMappingHelper;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.grpc.ManagedChannel;
 
 import static io.orkes.conductor.client.grpc.ChannelManager.getChannel;
@@ -35,6 +39,8 @@ public class GrpcTaskClient implements AutoCloseable {
 
     private final TaskServiceGrpc.TaskServiceBlockingStub stub;
 
+    private final TaskServiceGrpc.TaskServiceFutureStub futureStub;
+
     private final ProtoMappingHelper protoMapper = ProtoMappingHelper.INSTANCE;
 
     public GrpcTaskClient(ApiClient apiClient) {
@@ -42,6 +48,9 @@ public class GrpcTaskClient implements AutoCloseable {
         this.stub =
                 TaskServiceGrpc.newBlockingStub(this.channel)
                         .withInterceptors(new HeaderClientInterceptor(apiClient));
+        this.futureStub =
+                TaskServiceGrpc.newFutureStub(this.channel)
+                        .withInterceptors(new HeaderClientInterceptor(apiClient));
     }
 
     public List<Task> batchPoll(
@@ -64,6 +73,25 @@ public class GrpcTaskClient implements AutoCloseable {
         stub.updateTask(TaskServicePb.UpdateTaskRequest.newBuilder().setResult(protoMapper.toProto(taskResult)).build());
     }
 
+    public CompletableFuture<Void> updateTaskAsync(TaskResult taskResult) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Futures.addCallback(
+                futureStub.updateTask(TaskServicePb.UpdateTaskRequest.newBuilder().setResult(protoMapper.toProto(taskResult)).build()),
+                new FutureCallback<>() {
+                    @Override
+                    public void onSuccess(TaskServicePb.UpdateTaskResponse response) {
+                        result.complete(null);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+                },
+                MoreExecutors.directExecutor());
+        return result;
+    }
+
     @Override
     public void close() throws Exception {
         if(this.channel != null) {
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.grpc;
+
+/** Netty transport used by the gRPC channels. */
+public enum GrpcTransport {
+
+    /** Epoll when it is available, NIO otherwise. */
+    AUTO,
+
+    /** Java NIO, available everywhere. */
+    NIO,
+
+    /**
+     * Native epoll, Linux only, requires {@code io.netty:netty-transport-native-epoll} on the
+     * classpath. Falls back to NIO with a warning when it is not available.
+     */
+    EPOLL
+}
@@ -12,11 +12,14 @@
  */
 package io.orkes.conductor.client.grpc;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
 
 import com.netflix.conductor.client.telemetry.MetricsContainer;
+import com.netflix.conductor.client.worker.AsyncWorker;
 import com.netflix.conductor.client.worker.Worker;
 import com.netflix.conductor.common.metadata.tasks.Task;
 import com.netflix.conductor.common.metadata.tasks.TaskResult;
@@ -24,15 +27,23 @@ import com.netflix.conductor.grpc.TaskServiceGrpc;
 import com.netflix.conductor.grpc.TaskServicePb;
 import com.netflix.conductor.proto.TaskPb;
 
+import io.orkes.conductor.client.automator.TaskUpdateStage;
 import io.orkes.conductor.proto.ProtoMappingHelper;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 
 
 @Slf4j
 public class PoolWorker {
 
+    private static final int UPDATE_ATTEMPTS = 3;
+
+    private static final long UPDATE_TIMEOUT_MILLIS = 30_000;
+
     private final PooledPoller pooledPoller;
     private final Worker worker;
 
@@ -40,20 +51,54 @@ public class PoolWorker {
     private int threadId;
     private final ProtoMappingHelper protoMapper = ProtoMappingHelper.INSTANCE;
     private final Semaphore semaphore;
+    private final TaskUpdateStage taskUpdateStage;
+    private final Semaphore executionPermits;
+    private final Executor completionExecutor;
+    private final Semaphore updateWindow;
 
     public PoolWorker(TaskServiceGrpc.TaskServiceFutureStub taskServiceStub, PooledPoller pooledPoller, Worker worker, int threadId, Semaphore semaphore) {
+        this(taskServiceStub, pooledPoller, worker, threadId, semaphore, null);
+    }
+
+    public PoolWorker(TaskServiceGrpc.TaskServiceFutureStub taskServiceStub, PooledPoller pooledPoller, Worker worker, int threadId, Semaphore semaphore, TaskUpdateStage taskUpdateStage) {
+        this(taskServiceStub, pooledPoller, worker, threadId, semaphore, taskUpdateStage, null, null);
+    }
+
+    /**
+     * @param executionPermits bounds the executions of an {@link AsyncWorker} still pending, a
+     *     permit is held from the poll until the execution completes
+     * @param completionExecutor runs the result update of an {@link AsyncWorker} once its
+     *     execution completes
+     */
+    public PoolWorker(TaskServiceGrpc.TaskServiceFutureStub taskServiceStub, PooledPoller pooledPoller, Worker worker, int threadId, Semaphore semaphore, TaskUpdateStage taskUpdateStage, Semaphore executionPermits, Executor completionExecutor) {
+        this(taskServiceStub, pooledPoller, worker, threadId, semaphore, taskUpdateStage, executionPermits, completionExecutor, new Semaphore(ChannelManager.MAX_PENDING_UPDATES));
+    }
+
+    /**
+     * @param updateWindow bounds the result updates in flight on the channel of the stub, a permit
+     *     is held from the first attempt of an update until it succeeds or runs out of attempts
+     */
+    public PoolWorker(TaskServiceGrpc.TaskServiceFutureStub taskServiceStub, PooledPoller pooledPoller, Worker worker, int threadId, Semaphore semaphore, TaskUpdateStage taskUpdateStage, Semaphore executionPermits, Executor completionExecutor, Semaphore updateWindow) {
         this.taskServiceStub = taskServiceStub;
         this.pooledPoller = pooledPoller;
         this.worker = worker;
         this.threadId = threadId;
         this.semaphore = semaphore;
+        this.taskUpdateStage = taskUpdateStage;
+        this.executionPermits = executionPermits;
+        this.completionExecutor = completionExecutor;
+        this.updateWindow = updateWindow;
     }
 
     public void run() {
+        if (executionPermits != null) {
+            runAsync();
+            return;
+        }
         try {
             semaphore.acquireUninterruptibly();
             TaskPb.Task task = pooledPoller.getTask(threadId);
-            if (task != null && !"NO_OP".equals(task.getTaskId())) {
+            if (task != null) {
                 log.debug("Executing task {}", task.getTaskId());
                 Task taskModel = protoMapper.fromProto(task);
                 try {
@@ -68,62 +113,158 @@ public class PoolWorker {
                     log.warn("Error", e);
                 }
                 TaskResult result = worker.execute(taskModel);
+                if (result == null) {
+                    // Failed once here, it would otherwise fail every update attempt
+                    result = failedResult(taskModel, new NullPointerException("execute returned null"));
+                }
                 log.debug("Executed task {}", task.getTaskId());
-                updateTaskResult(3, taskModel, result, worker);
+                submitResult(taskModel, result);
             }
         } catch (Throwable e) {
             log.error("Error executing task: {}", e.getMessage(), e);
         }
     }
 
+    /**
+     * Starts the execution of an {@link AsyncWorker} and returns without waiting for it. The
+     * execution permit is released once the result has been handed over for update.
+     */
+    private void runAsync() {
+        executionPermits.acquireUninterruptibly();
+        boolean started = false;
+        try {
+            if (!pooledPoller.isRunning()) {
+                return;
+            }
+            semaphore.acquireUninterruptibly();
+            TaskPb.Task task = pooledPoller.getTask(threadId);
+            if (task == null) {
+                return;
+            }
+            log.debug("Executing task {}", task.getTaskId());
+            Task taskModel = protoMapper.fromProto(task);
+            CompletableFuture<TaskResult> execution;
+            try {
+                execution = ((AsyncWorker) worker).executeAsync(taskModel);
+                if (execution == null) {
+                    execution = CompletableFuture.failedFuture(new NullPointerException("executeAsync returned null"));
+                }
+            } catch (Throwable t) {
+                execution = CompletableFuture.failedFuture(t);
+            }
+            execution.whenCompleteAsync((result, error) -> {
+                try {
+                    onAsyncExecutionComplete(taskModel, result, error);
+                } finally {
+                    executionPermits.release();
+                }
+            }, completionExecutor);
+            started = true;
+        } catch (Throwable e) {
+            log.error("Error executing task: {}", e.getMessage(), e);
+        } finally {
+            if (!started) {
+                executionPermits.release();
+            }
+        }
+    }
 
-    private void updateTaskResult(int count, Task task, TaskResult result, Worker worker) {
+    private void onAsyncExecutionComplete(Task task, TaskResult result, Throwable error) {
         try {
+            if (error == null && result == null) {
+                error = new NullPointerException("executeAsync completed without a result");
+            }
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                result = failedResult(task, cause);
+            }
+            log.debug("Executed task {}", task.getTaskId());
+            submitResult(task, result);
+        } catch (Throwable e) {
+            log.error("Error updating task: {}", task.getTaskId(), e);
+        }
+    }
+
+    private TaskResult failedResult(Task task, Throwable cause) {
+        log.error("Error executing task: {}", task.getTaskId(), cause);
+        MetricsContainer.incrementTaskExecutionErrorCount(worker.getTaskDefName(), cause);
+        task.setStatus(Task.Status.FAILED);
+        TaskResult result = new TaskResult(task);
+        result.setReasonForIncompletion("Error while executing the task: " + cause);
+        return result;
+    }
 
-            retryOperation(
-                    (TaskResult taskResult) -> {
-                        _updateTask(taskResult);
-                        return null;
-                    },
-                    count,
-                    result,
-                    "updateTask");
-        } catch (Exception e) {
-            worker.onErrorUpdate(task);
-            MetricsContainer.incrementTaskUpdateErrorCount(worker.getTaskDefName(), e);
-            log.error("Failed to update result: {} for task: {} in worker: {}", result.toString(), task.getTaskDefName(), worker.getIdentity(),e);
+    private void submitResult(Task task, TaskResult result) {
+        if (taskUpdateStage != null) {
+            // Retries happen on the update stage, this thread goes back to polling right away
+            taskUpdateStage.submit(worker.getTaskDefName(), result)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            onUpdateFailure(task, result, error);
+                        }
+                    });
+        } else {
+            updateTaskResult(task, result);
         }
     }
 
-    private void _updateTask(TaskResult taskResult) {
-        long now = System.currentTimeMillis();
-        taskResult.getOutputData().put("_clientSendTime", now);
-        TaskServicePb.UpdateTaskRequest request = TaskServicePb.UpdateTaskRequest.newBuilder().setResult(protoMapper.toProto(taskResult)).build();
-        ListenableFuture<TaskServicePb.UpdateTaskResponse> future = taskServiceStub.updateTask(request);
+    /**
+     * Sends the update without waiting for it, the thread goes back to polling while the call is
+     * in flight and the retries are chained onto the call. The thread only blocks here when the
+     * update window of the channel is full.
+     */
+    private void updateTaskResult(Task task, TaskResult result) {
+        updateWindow.acquireUninterruptibly();
+        pooledPoller.onUpdateStarted();
+        sendUpdate(task, result, 1);
+    }
+
+    private void sendUpdate(Task task, TaskResult result, int attempt) {
+        long start = System.nanoTime();
+        ListenableFuture<TaskServicePb.UpdateTaskResponse> future;
         try {
-            future.get(30_000,  TimeUnit.MILLISECONDS);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        } finally {
-            log.info("Took {} ms to update task", (System.currentTimeMillis() - now));
+            if (result.getOutputData() != null) {
+                result.getOutputData().put("_clientSendTime", System.currentTimeMillis());
+            }
+            TaskServicePb.UpdateTaskRequest request = TaskServicePb.UpdateTaskRequest.newBuilder().setResult(protoMapper.toProto(result)).build();
+            future = taskServiceStub.withDeadlineAfter(UPDATE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).updateTask(request);
+        } catch (Throwable t) {
+            future = Futures.immediateFailedFuture(t);
         }
+        Futures.addCallback(future, new FutureCallback<>() {
 
-    }
+            @Override
+            public void onSuccess(TaskServicePb.UpdateTaskResponse response) {
+                MetricsContainer.getTaskUpdateTimer(worker.getTaskDefName())
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                onUpdateDone();
+            }
 
-    private <T, R> R retryOperation(Function<T, R> operation, int count, T input, String opName) {
-        int index = 0;
-        while (index < count) {
-            try {
-                return operation.apply(input);
-            } catch (Exception e) {
-                index++;
+            @Override
+            public void onFailure(Throwable t) {
+                if (attempt < UPDATE_ATTEMPTS) {
+                    MetricsContainer.incrementTaskUpdateRetryCount(worker.getTaskDefName());
+                    CompletableFuture.delayedExecutor(500L * (attempt + 1), TimeUnit.MILLISECONDS, MoreExecutors.directExecutor())
+                            .execute(() -> sendUpdate(task, result, attempt + 1));
+                    return;
+                }
                 try {
-                    Thread.sleep(500L * (index+1));
-                } catch (InterruptedException ie) {
-                    log.error("Retry interrupted", ie);
+                    onUpdateFailure(task, result, t);
+                } finally {
+                    onUpdateDone();
                 }
             }
-        }
-        throw new RuntimeException("Exhausted retries performing " + opName);
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void onUpdateDone() {
+        updateWindow.release();
+        pooledPoller.onUpdateCompleted();
+    }
+
+    private void onUpdateFailure(Task task, TaskResult result, Throwable e) {
+        worker.onErrorUpdate(task);
+        MetricsContainer.incrementTaskUpdateErrorCount(worker.getTaskDefName(), e);
+        log.error("Failed to update result: {} for task: {} in worker: {}", result.toString(), task.getTaskDefName(), worker.getIdentity(),e);
     }
 }
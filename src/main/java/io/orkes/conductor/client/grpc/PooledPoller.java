@@ -12,81 +12,161 @@
  */
 package io.orkes.conductor.client.grpc;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import com.netflix.conductor.client.telemetry.MetricsContainer;
+import com.netflix.conductor.client.worker.AsyncWorker;
 import com.netflix.conductor.client.worker.Worker;
 import com.netflix.conductor.grpc.TaskServiceGrpc;
 import com.netflix.conductor.grpc.TaskServicePb;
 import com.netflix.conductor.proto.TaskPb;
 
 import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.automator.TaskUpdateStage;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 
-import com.google.common.base.Stopwatch;
 import com.google.common.util.concurrent.Uninterruptibles;
+import io.grpc.Context;
 import io.grpc.ManagedChannel;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
-import lombok.Getter;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import static io.orkes.conductor.client.grpc.ChannelManager.getChannel;
 
+/**
+ * Polls the tasks of a worker over gRPC and hands them to the waiting {@link PoolWorker}s.
+ *
+ * <p>By default a batchPoll call with a 1 ms timeout is made every polling interval for the
+ * waiting workers. In long poll mode the free workers are credits: as soon as a worker waits, a
+ * call asking for the credits not yet requested is made with a long server timeout, so that
+ * tasks are picked up as soon as the server has them and calls complete only when tasks arrive or
+ * the timeout expires. Each call has a client deadline a few seconds past its server timeout, and
+ * one that comes back empty before its timeout delays the next call. A failed call is retried
+ * with exponential backoff.
+ */
 @Slf4j
 public class PooledPoller implements StreamObserver<TaskPb.Task> {
 
+    private static final long MIN_BACKOFF_MILLIS = 100;
+
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+
+    /** Time given to the calls in progress to complete once cancelled */
+    private static final long STOP_TIMEOUT_MILLIS = 1_000;
+
+    /** Added to the server timeout of a long poll call to get its client deadline */
+    private static final long LONG_POLL_DEADLINE_MARGIN_MILLIS = 5_000;
+
+    /** Delay before polling again when a long poll call came back empty before its timeout */
+    private static final long MIN_EMPTY_POLL_DELAY_MILLIS = 100;
+
     private final TaskServiceGrpc.TaskServiceStub taskPollClient;
     private final Worker worker;
+    private final String workerId;
     private final String domain;
-    private ThreadPoolExecutor executor;
+    private ExecutorService executor;
     private Integer threadCountForTask;
-    private final ArrayBlockingQueue<Holder> latchesForOrder = new ArrayBlockingQueue<>(10000);
+    private final TaskHandoff<TaskPb.Task> handoff;
     private final AtomicBoolean runWorkers = new AtomicBoolean(true);
     private final AtomicBoolean callAgain = new AtomicBoolean(true);
     private final AtomicLong lastAskedForMessageCount = new AtomicLong(0);
     private final Semaphore semaphore;
     private final int taskPollCount;
     private final ApiClient apiClient;
+    private final TaskUpdateStage taskUpdateStage;
+    private final ScheduledExecutorService pollScheduler;
+    private final Semaphore executionPermits;
+    private final ExecutorService completionExecutor;
+    private final ManagedChannel channel;
+    private final int longPollTimeoutMillis;
+    private final AtomicInteger requestedCredits = new AtomicInteger();
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+    private final Context.CancellableContext pollContext = Context.current().withCancellation();
+    private int consecutivePollErrors;
+    private long nextPollAt;
 
-    public PooledPoller(ApiClient apiClient, Worker worker, String domain, int taskPollCount, Integer taskPollTimeout, ThreadPoolExecutor executor, Integer threadCountForTask) {
+    public PooledPoller(ApiClient apiClient, Worker worker, String domain, int taskPollCount, Integer taskPollTimeout, ExecutorService executor, Integer threadCountForTask) {
+        this(apiClient, worker, domain, taskPollCount, taskPollTimeout, executor, threadCountForTask, null, null);
+    }
+
+    /**
+     * @param taskUpdateStage when not null, results are sent asynchronously through this stage
+     * @param pollScheduler scheduler used to trigger the polls, can be shared by many pollers as
+     *     polling does not block. A dedicated single thread scheduler is used when null.
+     */
+    public PooledPoller(ApiClient apiClient, Worker worker, String domain, int taskPollCount, Integer taskPollTimeout, ExecutorService executor, Integer threadCountForTask, TaskUpdateStage taskUpdateStage, ScheduledExecutorService pollScheduler) {
+        this(apiClient, worker, domain, taskPollCount, taskPollTimeout, executor, threadCountForTask, taskUpdateStage, pollScheduler, 0);
+    }
+
+    /**
+     * @param longPollTimeoutMillis server timeout of the calls in long poll mode, 0 to poll every
+     *     polling interval instead
+     */
+    public PooledPoller(ApiClient apiClient, Worker worker, String domain, int taskPollCount, Integer taskPollTimeout, ExecutorService executor, Integer threadCountForTask, TaskUpdateStage taskUpdateStage, ScheduledExecutorService pollScheduler, int longPollTimeoutMillis) {
 
         this.apiClient = apiClient;
-        ManagedChannel channel = getChannel(apiClient);
+        this.longPollTimeoutMillis = longPollTimeoutMillis;
+        this.channel = getChannel(apiClient);
         this.taskPollClient = TaskServiceGrpc.newStub(channel).withInterceptors(new HeaderClientInterceptor(apiClient));
         this.worker = worker;
+        // Resolved once, the default identity looks up the host name
+        this.workerId = worker.getIdentity();
         this.domain = domain;
         this.executor = executor;
         this.threadCountForTask = threadCountForTask;
         this.taskPollCount = taskPollCount;
-        this.semaphore = new Semaphore(threadCountForTask);;
+        this.semaphore = new Semaphore(threadCountForTask);
+        this.handoff = new TaskHandoff<>(threadCountForTask);
+        this.taskUpdateStage = taskUpdateStage;
+        this.pollScheduler = pollScheduler != null ? pollScheduler : Executors.newSingleThreadScheduledExecutor();
+        if (worker instanceof AsyncWorker) {
+            // Pending executions do not hold a thread, they are bounded by these permits instead
+            this.executionPermits = new Semaphore(threadCountForTask);
+            this.completionExecutor = Executors.newCachedThreadPool(
+                    new BasicThreadFactory.Builder()
+                            .namingPattern(worker.getTaskDefName() + "-completion-%d")
+                            .daemon(true)
+                            .build());
+        } else {
+            this.executionPermits = null;
+            this.completionExecutor = null;
+        }
     }
 
     public void start() {
         log.info("Starting {} worker with {} threads and polling interval at {} ms with pollCount at {}", worker.getTaskDefName(), this.threadCountForTask, this.worker.getPollingInterval(), this.taskPollCount);
-        Executors.newSingleThreadScheduledExecutor()
-                .scheduleWithFixedDelay(
-                        () -> {
-                            try {
-                                this.runAccumulatedRequests();
-                            } catch (Exception e) {
-                                log.warn("Unable to batch poll");
-                            }
-                        },
-                        worker.getPollingInterval(),
-                        worker.getPollingInterval(),
-                        TimeUnit.MILLISECONDS);
+        pollScheduler.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        // In long poll mode the calls are made when workers wait, this only retries after a backoff
+                        if (longPollTimeoutMillis > 0) {
+                            this.requestCredits();
+                        } else {
+                            this.runAccumulatedRequests();
+                        }
+                    } catch (Exception e) {
+                        log.warn("Unable to batch poll");
+                    }
+                },
+                worker.getPollingInterval(),
+                worker.getPollingInterval(),
+                TimeUnit.MILLISECONDS);
 
-        ManagedChannel channel = getChannel(apiClient);
         TaskServiceGrpc.TaskServiceFutureStub taskServiceStub = TaskServiceGrpc.newFutureStub(channel).withInterceptors(new HeaderClientInterceptor(apiClient));
+        Semaphore updateWindow = ChannelManager.getUpdateWindow(channel);
         for (int i = 0; i < threadCountForTask; i++) {
-            PoolWorker poolWorker = new PoolWorker(taskServiceStub,this, worker, i, semaphore);
+            PoolWorker poolWorker = new PoolWorker(taskServiceStub,this, worker, i, semaphore, taskUpdateStage, executionPermits, completionExecutor, updateWindow);
             executor.execute(
                     () -> {
                         try {
@@ -102,60 +182,121 @@ public class PooledPoller implements StreamObserver<TaskPb.Task> {
         }
     }
 
+    /**
+     * Stops polling: the calls in progress are cancelled and awaited, so that no task is leased
+     * once the workers are released.
+     */
     public void stopWorkers() {
         runWorkers.set(false);
+        // Tasks of a pending poll would have no worker left to execute them
+        pollContext.cancel(null);
+        // A call cancelled while tasks were on their way still delivers them to the waiting workers
+        long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MILLIS;
+        while ((!callAgain.get() || requestedCredits.get() > 0) && System.currentTimeMillis() < deadline) {
+            Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+        }
+        // Release the threads waiting for a task, they get no task and exit their loop
+        handoff.close();
+    }
+
+    /**
+     * Releases the channel of the poller, once its workers are stopped and their executions
+     * completed.
+     */
+    public void close() {
+        channel.shutdown();
+    }
+
+    boolean isRunning() {
+        return runWorkers.get();
+    }
+
+    /**
+     * Waits for the pending executions of an {@link AsyncWorker}, which are not tracked by the
+     * worker threads, and for the result updates still in flight. Executions still pending after
+     * the timeout are reported as abandoned, their continuations are left to run on the completion
+     * executor.
+     *
+     * @return true if all the executions and updates completed within the timeout
+     */
+    public boolean awaitExecutions(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        if (executionPermits != null) {
+            boolean completed;
+            try {
+                completed = executionPermits.tryAcquire(threadCountForTask, timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                completed = false;
+            }
+            if (!completed) {
+                int abandoned = threadCountForTask - executionPermits.availablePermits();
+                log.warn("Abandoned {} pending executions of type {}, they will be retried after their timeout", abandoned, worker.getTaskDefName());
+                MetricsContainer.incrementTaskDrainAbandonedCount(worker.getTaskDefName(), abandoned);
+                return false;
+            }
+            executionPermits.release(threadCountForTask);
+            completionExecutor.shutdown();
+        }
+        return awaitUpdates(deadline);
     }
 
-    @Getter
-    @Setter
-    static class Holder {
-        CountDownLatch myLatch;
-        TaskPb.Task task;
+    private boolean awaitUpdates(long deadline) {
+        synchronized (pendingUpdates) {
+            long remaining;
+            while (pendingUpdates.get() > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    pendingUpdates.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return pendingUpdates.get() == 0;
+        }
+    }
 
-        public Holder(CountDownLatch myLatch) {
-            this.myLatch = myLatch;
+    void onUpdateStarted() {
+        pendingUpdates.incrementAndGet();
+    }
+
+    void onUpdateCompleted() {
+        if (pendingUpdates.decrementAndGet() == 0) {
+            synchronized (pendingUpdates) {
+                pendingUpdates.notifyAll();
+            }
         }
     }
 
+    /**
+     * Waits for the next polled task.
+     *
+     * @param threadId id of the calling worker, between 0 and the thread count
+     * @return the task, or null once the workers are stopped
+     */
     public TaskPb.Task getTask(int threadId) {
-        Stopwatch stopwatch = Stopwatch.createStarted();
-        TaskPb.Task poll = null;
-        try {
-            CountDownLatch myLatch = new CountDownLatch(1);
-            Holder holder = new Holder(myLatch);
-            latchesForOrder.put(holder);
-            Uninterruptibles.awaitUninterruptibly(myLatch);
-            poll = holder.getTask();
-        } catch (InterruptedException e) {
-            log.error("ERROR WAITING --- ", e);
-        } finally {
-            long elapsed = stopwatch.elapsed(TimeUnit.MILLISECONDS);
-            if (elapsed > 9000) {
-                log.info(
-                        "Polled in {} ms - found task - {}",
-                        elapsed,
-                        (poll != null && !poll.getTaskId().equals("NO_OP")));
-            }
+        long start = System.nanoTime();
+        if (longPollTimeoutMillis > 0 && handoff.size() == 0) {
+            scheduleRequestCredits(0);
         }
-        if (poll == null) { // Poll shouldn't be null in a regular flow, only happens when we time
-            // out on the blocking queue
+        TaskPb.Task poll = handoff.take(threadId);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (elapsed > 9000) {
+            log.info("Polled in {} ms - found task - {}", elapsed, poll != null);
+        }
+        if (poll == null) { // Only happens when the workers are stopped
             semaphore.release();
         }
         return poll;
     }
 
     public void saveTask(TaskPb.Task task) {
-        if (task != null) {
-            try {
-                Holder holder = this.latchesForOrder.poll(1000, TimeUnit.MILLISECONDS);
-                if (holder == null) {
-                    throw new RuntimeException("Holder cannot be null!");
-                }
-                holder.task = task;
-                holder.myLatch.countDown();
-            } catch (InterruptedException e) {
-                log.error("ERROR!", e);
-            }
+        if (task != null && !runWorkers.get()) {
+            log.warn("Task {} of type {} received while stopping, the server will time it out", task.getTaskId(), worker.getTaskDefName());
+        }
+        if (task != null && !handoff.offer(task)) {
+            // Tasks are only polled for waiting workers, so this is not expected
+            log.error("No room to hand over task {} of type {}", task.getTaskId(), worker.getTaskDefName());
         }
     }
 
@@ -169,12 +310,68 @@ public class PooledPoller implements StreamObserver<TaskPb.Task> {
         }
         // Make GRPC call for these many
         // Observe for results, add them to local queue
-        if (callAgain.get()) {
+        if (runWorkers.get() && callAgain.get()) {
             callAgain.set(false);
             lastAskedForMessageCount.set(currentPending);
             log.trace("Polling {} for {} tasks", worker.getTaskDefName(), currentPending);
             TaskServicePb.BatchPollRequest request = buildPollRequest(currentPending, 1);
-            taskPollClient.batchPoll(request, this);
+            // Cancelled by stopWorkers, like the long poll calls
+            pollContext.run(() -> taskPollClient.batchPoll(request, this));
+        }
+    }
+
+    /**
+     * Asks for a task for each waiting worker that is not covered by a pending call, in long poll
+     * mode.
+     */
+    private synchronized void requestCredits() {
+        if (!runWorkers.get() || System.currentTimeMillis() < nextPollAt) {
+            return;
+        }
+        int waiting = threadCountForTask - semaphore.availablePermits();
+        int credits = Math.min(waiting - requestedCredits.get(), taskPollCount);
+        if (credits <= 0) {
+            return;
+        }
+        requestedCredits.addAndGet(credits);
+        log.trace("Long polling {} for {} tasks", worker.getTaskDefName(), credits);
+        TaskServicePb.BatchPollRequest request = buildPollRequest(credits, longPollTimeoutMillis);
+        LongPollCall call = new LongPollCall(credits);
+        // A call the server never completes, e.g. on a half-open connection, would hold its
+        // credits forever
+        pollContext.run(() -> taskPollClient
+                .withDeadlineAfter(longPollTimeoutMillis + LONG_POLL_DEADLINE_MARGIN_MILLIS, TimeUnit.MILLISECONDS)
+                .batchPoll(request, call));
+    }
+
+    /**
+     * @param failed whether the call failed, failures are retried with exponential backoff
+     * @param returnedEarly whether the call came back without any task before its timeout, e.g.
+     *     from a server that does not hold the calls, in which case polling again right away
+     *     would spin
+     */
+    private synchronized void onLongPollCompleted(boolean failed, boolean returnedEarly) {
+        if (!failed) {
+            consecutivePollErrors = 0;
+            nextPollAt = returnedEarly ? System.currentTimeMillis() + MIN_EMPTY_POLL_DELAY_MILLIS : 0;
+        } else {
+            consecutivePollErrors++;
+            long backoff = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(consecutivePollErrors - 1, 16));
+            // Jitter spreads the reconnections of the workers after a server restart
+            backoff += ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            nextPollAt = System.currentTimeMillis() + backoff;
+        }
+        scheduleRequestCredits(Math.max(0, nextPollAt - System.currentTimeMillis()));
+    }
+
+    private void scheduleRequestCredits(long delayMillis) {
+        if (!runWorkers.get()) {
+            return;
+        }
+        try {
+            pollScheduler.schedule(this::requestCredits, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Poll scheduler stopped, not polling {}", worker.getTaskDefName());
         }
     }
 
@@ -184,7 +381,7 @@ public class PooledPoller implements StreamObserver<TaskPb.Task> {
                         .setCount(count)
                         .setTaskType(worker.getTaskDefName())
                         .setTimeout(timeoutInMillisecond)
-                        .setWorkerId(worker.getIdentity());
+                        .setWorkerId(workerId);
         if (domain != null) {
             requestBuilder = requestBuilder.setDomain(domain);
         }
@@ -204,9 +401,13 @@ public class PooledPoller implements StreamObserver<TaskPb.Task> {
 
     @Override
     public void onError(Throwable t) {
+        drain();
+        logPollError(t);
+    }
+
+    private void logPollError(Throwable t) {
         Status status = Status.fromThrowable(t);
         Status.Code code = status.getCode();
-        drain();
         switch (code) {
             case UNAVAILABLE:
                 log.trace("Server not available ");
@@ -232,12 +433,51 @@ public class PooledPoller implements StreamObserver<TaskPb.Task> {
     private void drain() {
         long didntGetMessageCount = lastAskedForMessageCount.get();
         if (didntGetMessageCount > 0) {
+            // The workers keep waiting and are counted again by the next poll
             log.debug("Didn't get {} messages from server as expected", didntGetMessageCount);
-            for (int i = 0; i < didntGetMessageCount; i++) {
-                this.saveTask(TaskPb.Task.newBuilder().setTaskId("NO_OP").build());
+        }
+        callAgain.set(true);
+    }
+
+    /** A call of the long poll mode, the workers keep waiting for the credits it did not fill. */
+    private class LongPollCall implements StreamObserver<TaskPb.Task> {
+
+        private final int credits;
+
+        private final AtomicInteger received = new AtomicInteger();
+
+        private final long startedAt = System.currentTimeMillis();
+
+        private LongPollCall(int credits) {
+            this.credits = credits;
+        }
+
+        @Override
+        public void onNext(TaskPb.Task task) {
+            try {
+                saveTask(task);
                 semaphore.release();
+                received.incrementAndGet();
+                requestedCredits.decrementAndGet();
+            } catch (Throwable t) {
+                log.error(t.getMessage(), t);
             }
         }
-        callAgain.set(true);
+
+        @Override
+        public void onError(Throwable t) {
+            requestedCredits.addAndGet(-(credits - received.get()));
+            if (runWorkers.get()) {
+                logPollError(t);
+            }
+            onLongPollCompleted(true, false);
+        }
+
+        @Override
+        public void onCompleted() {
+            requestedCredits.addAndGet(-(credits - received.get()));
+            boolean returnedEarly = received.get() == 0 && System.currentTimeMillis() - startedAt < longPollTimeoutMillis;
+            onLongPollCompleted(false, returnedEarly);
+        }
     }
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.grpc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands the polled tasks over to the worker threads of a {@link PooledPoller} without locks and
+ * without allocating per task.
+ *
+ * <p>Tasks go through a bounded lock-free ring. A worker finding no task registers its id in a
+ * second ring and parks; a producer unparks one registered worker after adding a task. The worker
+ * checks the tasks again after registering, so that a task added in the meantime is not missed.
+ * Ids of workers that found a task on that check stay in the ring and are skipped by the
+ * producers.
+ *
+ * @param <T> type of the tasks
+ */
+final class TaskHandoff<T> {
+
+    private static final int RUNNING = 0;
+
+    private static final int WAITING = 1;
+
+    /** Used only if the ring of waiting workers is full, which the extra capacity should avoid. */
+    private static final long FALLBACK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Ring<T> tasks;
+
+    private final Ring<Integer> waitingWorkers;
+
+    private final Integer[] workerIds;
+
+    private final AtomicIntegerArray states;
+
+    private final AtomicReferenceArray<Thread> threads;
+
+    private volatile boolean closed;
+
+    /**
+     * @param workerCount number of worker threads, and most tasks handed over at once
+     */
+    TaskHandoff(int workerCount) {
+        this.tasks = new Ring<>(workerCount * 2);
+        this.waitingWorkers = new Ring<>(workerCount * 2);
+        // Boxed once so that registering does not allocate
+        this.workerIds = new Integer[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workerIds[i] = i;
+        }
+        this.states = new AtomicIntegerArray(workerCount);
+        this.threads = new AtomicReferenceArray<>(workerCount);
+    }
+
+    /**
+     * @return false if there is no room for the task
+     */
+    boolean offer(T task) {
+        if (!tasks.offer(task)) {
+            return false;
+        }
+        wakeUpWaitingWorker();
+        return true;
+    }
+
+    private void wakeUpWaitingWorker() {
+        Integer workerId;
+        while ((workerId = waitingWorkers.poll()) != null) {
+            if (states.compareAndSet(workerId, WAITING, RUNNING)) {
+                LockSupport.unpark(threads.get(workerId));
+                return;
+            }
+        }
+    }
+
+    /** Stops waiting, passing on the wake-up this worker may have received for another task. */
+    private void stopWaiting(int workerId) {
+        if (!states.compareAndSet(workerId, WAITING, RUNNING)) {
+            wakeUpWaitingWorker();
+        }
+    }
+
+    /**
+     * Waits for a task.
+     *
+     * @param workerId id of the calling worker, between 0 and the worker count
+     * @return the task, or null once closed
+     */
+    T take(int workerId) {
+        threads.set(workerId, Thread.currentThread());
+        while (true) {
+            T task = tasks.poll();
+            if (task != null) {
+                return task;
+            }
+            if (closed) {
+                return null;
+            }
+            states.set(workerId, WAITING);
+            boolean registered = waitingWorkers.offer(workerIds[workerId]);
+            task = tasks.poll();
+            if (task != null) {
+                stopWaiting(workerId);
+                return task;
+            }
+            if (!registered) {
+                LockSupport.parkNanos(this, FALLBACK_PARK_NANOS);
+                stopWaiting(workerId);
+                continue;
+            }
+            while (states.get(workerId) == WAITING && !closed) {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /** Releases the waiting workers, they get no task from now on. */
+    void close() {
+        closed = true;
+        for (int i = 0; i < threads.length(); i++) {
+            Thread thread = threads.get(i);
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    int size() {
+        return tasks.size();
+    }
+
+    /** Bounded multi-producer multi-consumer ring, after Dmitry Vyukov's bounded MPMC queue. */
+    private static final class Ring<E> {
+
+        private final AtomicReferenceArray<E> buffer;
+
+        private final AtomicLongArray sequences;
+
+        private final int mask;
+
+        private final AtomicLong head = new AtomicLong();
+
+        private final AtomicLong tail = new AtomicLong();
+
+        private Ring(int minCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+            this.buffer = new AtomicReferenceArray<>(capacity);
+            this.sequences = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        private boolean offer(E element) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        buffer.set(index, element);
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        private E poll() {
+            long position = head.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long difference = sequences.get(index) - (position + 1);
+                if (difference == 0) {
+                    if (head.compareAndSet(position, position + 1)) {
+                        E element = buffer.get(index);
+                        buffer.set(index, null);
+                        sequences.set(index, position + mask + 1);
+                        return element;
+                    }
+                    position = head.get();
+                } else if (difference < 0) {
+                    return null;
+                } else {
+                    position = head.get();
+                }
+            }
+        }
+
+        private int size() {
+            return (int) Math.max(0, tail.get() - head.get());
+        }
+    }
+}
@@ -12,22 +12,30 @@
  */
 package io.orkes.conductor.client.http;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+import com.netflix.conductor.client.telemetry.MetricsContainer;
 import com.netflix.conductor.common.config.ObjectMapperProvider;
 import com.netflix.conductor.common.metadata.tasks.PollData;
 import com.netflix.conductor.common.metadata.tasks.Task;
 import com.netflix.conductor.common.metadata.tasks.TaskExecLog;
 import com.netflix.conductor.common.metadata.tasks.TaskResult;
+import com.netflix.conductor.common.run.ExternalStorageLocation;
 import com.netflix.conductor.common.run.SearchResult;
 import com.netflix.conductor.common.run.Workflow;
+import com.netflix.conductor.common.utils.ExternalPayloadStorage;
 
 import io.orkes.conductor.client.ApiClient;
 import io.orkes.conductor.client.TaskClient;
 import io.orkes.conductor.client.grpc.GrpcTaskClient;
+import io.orkes.conductor.client.http.api.AsyncApiCallback;
 import io.orkes.conductor.client.http.api.TaskResourceApi;
 import io.orkes.conductor.client.model.TaskSummary;
 
@@ -43,6 +51,10 @@ public class OrkesTaskClient extends TaskClient implements AutoCloseable {
 
     private ObjectMapper objectMapper = new ObjectMapperProvider().getObjectMapper();
 
+    private ExternalPayloadStorage externalPayloadStorage;
+
+    private long taskOutputThresholdBytes;
+
     public OrkesTaskClient(ApiClient apiClient) {
         this.apiClient = apiClient;
         this.taskResourceApi = new TaskResourceApi(apiClient);
@@ -66,6 +78,24 @@ public class OrkesTaskClient extends TaskClient implements AutoCloseable {
         return this;
     }
 
+    /**
+     * Stores the task outputs larger than the threshold in the given storage instead of sending
+     * them inline with the task update. The task result then only carries the path of the stored
+     * payload.
+     *
+     * @param externalPayloadStorage storage the large outputs are uploaded to
+     * @param taskOutputThresholdKB size of the serialized output above which it is uploaded
+     * @return this client
+     */
+    public OrkesTaskClient withExternalPayloadStorage(ExternalPayloadStorage externalPayloadStorage, int taskOutputThresholdKB) {
+        if (taskOutputThresholdKB < 1) {
+            throw new IllegalArgumentException("Payload threshold cannot be less than 1 KB");
+        }
+        this.externalPayloadStorage = externalPayloadStorage;
+        this.taskOutputThresholdBytes = taskOutputThresholdKB * 1024L;
+        return this;
+    }
+
     public OrkesTaskClient withConnectTimeout(int connectTimeout) {
         apiClient.setConnectTimeout(connectTimeout);
         return this;
@@ -114,6 +144,26 @@ public class OrkesTaskClient extends TaskClient implements AutoCloseable {
         }
     }
 
+    /**
+     * Sends the task result without blocking the calling thread. Concurrent calls are pipelined
+     * over the connections of the underlying client.
+     *
+     * @param taskResult Task result to be updated
+     * @return future that completes once the server has acknowledged the update
+     */
+    public CompletableFuture<Void> updateTaskAsync(TaskResult taskResult) {
+        if(apiClient.isUseGRPC()) {
+            return grpcTaskClient.updateTaskAsync(taskResult);
+        }
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try {
+            taskResourceApi.updateTaskAsync(taskResult, new AsyncApiCallback<>(future));
+        } catch (ApiException e) {
+            future.completeExceptionally(e);
+        }
+        return future.thenApply(taskId -> null);
+    }
+
 
     /**
      * Update the task status and output based given workflow id and task reference name
@@ -150,10 +200,64 @@ public class OrkesTaskClient extends TaskClient implements AutoCloseable {
         return taskResourceApi.updateTaskSync(outputMap, workflowId, taskReferenceName, status.toString());
     }
 
+    /**
+     * Uploads the output to the external payload storage if its serialized size is above the
+     * threshold. The output is first serialized to a stream that only counts the bytes and stops
+     * at the threshold, so that small outputs are not buffered and large ones are not measured in
+     * full before being serialized for the upload.
+     *
+     * @return path of the uploaded payload, empty if the output is to be sent inline
+     */
     @Override
     public Optional<String> evaluateAndUploadLargePayload(
             Map<String, Object> taskOutputData, String taskType) {
-        return Optional.empty();
+        if (externalPayloadStorage == null || taskOutputData == null || taskOutputData.isEmpty()) {
+            return Optional.empty();
+        }
+        ThresholdOutputStream counter = new ThresholdOutputStream(taskOutputThresholdBytes);
+        try {
+            objectMapper.writeValue(counter, taskOutputData);
+        } catch (IOException e) {
+            if (!counter.isExceeded()) {
+                throw new IllegalArgumentException("Unable to serialize the output of task type " + taskType, e);
+            }
+        }
+        if (!counter.isExceeded()) {
+            MetricsContainer.recordTaskResultPayloadSize(taskType, counter.getCount());
+            return Optional.empty();
+        }
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(taskOutputData);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to serialize the output of task type " + taskType, e);
+        }
+        MetricsContainer.recordTaskResultPayloadSize(taskType, payload.length);
+        ExternalStorageLocation location =
+                externalPayloadStorage.getLocation(
+                        ExternalPayloadStorage.Operation.WRITE,
+                        ExternalPayloadStorage.PayloadType.TASK_OUTPUT,
+                        "");
+        externalPayloadStorage.upload(location.getUri(), new ByteArrayInputStream(payload), payload.length);
+        MetricsContainer.incrementExternalPayloadUsedCount(
+                taskType,
+                ExternalPayloadStorage.Operation.WRITE.name(),
+                ExternalPayloadStorage.PayloadType.TASK_OUTPUT.name());
+        return Optional.of(location.getPath());
+    }
+
+    /**
+     * Location given by the server for a payload stored externally, for {@link
+     * ExternalPayloadStorage} implementations backed by the storage configured on the server.
+     *
+     * @param path path of the payload, empty to let the server generate one for an upload
+     * @param operation READ or WRITE
+     * @param payloadType one of {@link ExternalPayloadStorage.PayloadType}
+     * @return uri and path of the payload
+     */
+    public io.orkes.conductor.client.model.ExternalStorageLocation getExternalStorageLocation(
+            String path, String operation, String payloadType) {
+        return taskResourceApi.getExternalStorageLocation1(path, operation, payloadType);
     }
 
     @Override
@@ -238,4 +342,44 @@ public class OrkesTaskClient extends TaskClient implements AutoCloseable {
             this.grpcTaskClient.close();
         }
     }
+
+    /** Counts the bytes written and fails as soon as they exceed the threshold. */
+    private static class ThresholdOutputStream extends OutputStream {
+
+        private final long threshold;
+
+        private long count;
+
+        private boolean exceeded;
+
+        private ThresholdOutputStream(long threshold) {
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            add(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            add(len);
+        }
+
+        private void add(int length) throws IOException {
+            count += length;
+            if (count > threshold) {
+                exceeded = true;
+                throw new IOException("Payload larger than " + threshold + " bytes");
+            }
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        boolean isExceeded() {
+            return exceeded;
+        }
+    }
 }
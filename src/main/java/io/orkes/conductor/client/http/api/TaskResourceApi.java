@@ -1928,6 +1928,24 @@ public class TaskResourceApi {
         return apiClient.execute(call, localVarReturnType);
     }
 
+    /**
+     * Update a task (asynchronously)
+     *
+     * @param taskResult (required)
+     * @param callback The callback to be executed when the API call finishes
+     * @return The request call
+     * @throws ApiException If fail to process the API call, e.g. serializing the request body
+     *     object
+     */
+    public com.squareup.okhttp.Call updateTaskAsync(
+            TaskResult taskResult, final ApiCallback<String> callback) throws ApiException {
+        // No progress listeners here, updateTaskCall registers a new network interceptor for each
+        com.squareup.okhttp.Call call = updateTaskValidateBeforeCall(taskResult, null, null);
+        Type localVarReturnType = new TypeReference<String>() {}.getType();
+        apiClient.executeAsync(call, localVarReturnType, callback);
+        return call;
+    }
+
     private com.squareup.okhttp.Call updateTaskByRefNameCall(
             Map<String, Object> body,
             String workflowId,
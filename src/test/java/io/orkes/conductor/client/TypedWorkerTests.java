@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TypedWorkerTests {
+
+    @Test
+    void inputIsBoundAndOutputSerialized() {
+        TypedWorker<Order, Receipt> worker =
+                new TypedWorker<>("typed_task", Order.class, order -> new Receipt(order.getId(), order.getQuantity() * 2));
+
+        TaskResult result = worker.execute(task(Map.of("id", "o-1", "quantity", 21, "_createdBy", "someone")));
+
+        assertEquals(TaskResult.Status.COMPLETED, result.getStatus());
+        assertEquals("o-1", result.getOutputData().get("orderId"));
+        assertEquals(42, result.getOutputData().get("total"));
+    }
+
+    @Test
+    void valueThatIsNotAnObjectIsReturnedUnderResult() {
+        TypedWorker<Order, List<String>> worker =
+                new TypedWorker<>("typed_task", Order.class, order -> List.of(order.getId()));
+
+        TaskResult result = worker.execute(task(Map.of("id", "o-1")));
+
+        assertEquals(List.of("o-1"), result.getOutputData().get("result"));
+    }
+
+    @Test
+    void inputThatCannotBeBoundFailsTheTaskTerminally() {
+        TypedWorker<Order, Receipt> worker =
+                new TypedWorker<>("typed_task", Order.class, order -> fail("must not be called"));
+
+        TaskResult result = worker.execute(task(Map.of("quantity", "not a number")));
+
+        assertEquals(TaskResult.Status.FAILED_WITH_TERMINAL_ERROR, result.getStatus());
+        assertTrue(result.getReasonForIncompletion().contains("Order"));
+    }
+
+    private static Task task(Map<String, Object> inputData) {
+        Task task = new Task();
+        task.setTaskId("t1");
+        task.setWorkflowInstanceId("workflow");
+        task.setInputData(new HashMap<>(inputData));
+        return task;
+    }
+
+    public static class Order {
+
+        private String id;
+
+        private int quantity;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+
+    public static class Receipt {
+
+        private final String orderId;
+
+        private final int total;
+
+        public Receipt(String orderId, int total) {
+            this.orderId = orderId;
+            this.total = total;
+        }
+
+        public String getOrderId() {
+            return orderId;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.client.worker.AsyncWorker;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+import io.orkes.conductor.client.util.FakeConductorServer;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncWorkerTests {
+
+    private static final String TASK_TYPE = "async_task";
+
+    @Test
+    void permitsAreHeldUntilTheExecutionCompletes() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            PendingWorker worker = new PendingWorker();
+            TaskRunner taskRunner = taskRunner(worker, taskClient);
+            server.addTasks(task("t1"), task("t2"), task("t3"));
+
+            assertEquals(0, taskRunner.pollOnce());
+            awaitTrue(() -> worker.executions.size() == 2);
+            // The threads are free but the executions still hold the permits
+            assertEquals(2, taskRunner.getInFlightCount());
+            assertEquals(TaskRunner.WAIT_FOR_PERMITS, taskRunner.pollOnce());
+            assertTrue(server.getTaskUpdates().isEmpty());
+
+            worker.executions.get("t1").complete(completed("t1"));
+            worker.executions.get("t2").completeExceptionally(new IllegalStateException("failed"));
+            awaitTrue(() -> server.getTaskUpdates().size() == 2);
+            awaitTrue(() -> taskRunner.getInFlightCount() == 0);
+
+            Map<String, TaskResult.Status> statuses = new ConcurrentHashMap<>();
+            server.getTaskUpdates().forEach(result -> statuses.put(result.getTaskId(), result.getStatus()));
+            assertEquals(TaskResult.Status.COMPLETED, statuses.get("t1"));
+            assertEquals(TaskResult.Status.FAILED, statuses.get("t2"));
+
+            assertEquals(0, taskRunner.pollOnce());
+            awaitTrue(() -> worker.executions.containsKey("t3"));
+            worker.executions.get("t3").complete(completed("t3"));
+            assertEquals(0, taskRunner.drain(5_000));
+        }
+    }
+
+    private static TaskRunner taskRunner(AsyncWorker worker, OrkesTaskClient taskClient) {
+        return new TaskRunner.Builder(worker, taskClient)
+                .withUpdateRetryCount(1)
+                .withWorkerNamePrefix("async-worker-%d")
+                .withThreadCount(2)
+                .build();
+    }
+
+    private static Task task(String taskId) {
+        Task task = new Task();
+        task.setTaskId(taskId);
+        task.setTaskType(TASK_TYPE);
+        task.setTaskDefName(TASK_TYPE);
+        task.setWorkflowInstanceId("workflow");
+        task.setStatus(Task.Status.IN_PROGRESS);
+        return task;
+    }
+
+    private static TaskResult completed(String taskId) {
+        TaskResult result = new TaskResult();
+        result.setTaskId(taskId);
+        result.setStatus(TaskResult.Status.COMPLETED);
+        return result;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not met in time");
+            Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static class PendingWorker implements AsyncWorker {
+
+        private final Map<String, CompletableFuture<TaskResult>> executions = new ConcurrentHashMap<>();
+
+        @Override
+        public String getTaskDefName() {
+            return TASK_TYPE;
+        }
+
+        @Override
+        public CompletableFuture<TaskResult> executeAsync(Task task) {
+            CompletableFuture<TaskResult> execution = new CompletableFuture<>();
+            executions.put(task.getTaskId(), execution);
+            return execution;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.client.worker.BatchWorker;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+import io.orkes.conductor.client.util.FakeConductorServer;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchWorkerTests {
+
+    private static final String TASK_TYPE = "batch_task";
+
+    @Test
+    void pollIsSplitIntoBatchesAndResultsAreSentPerTask() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            RecordingWorker worker = new RecordingWorker(4, 0);
+            TaskRunner taskRunner = taskRunner(worker, taskClient);
+            for (int i = 0; i < 10; i++) {
+                server.addTasks(task("t" + i));
+            }
+
+            assertEquals(0, taskRunner.pollOnce());
+            awaitTrue(() -> server.getTaskUpdates().size() == 10);
+            awaitTrue(() -> taskRunner.getInFlightCount() == 0);
+
+            List<Integer> batchSizes = worker.batches.stream().map(List::size).sorted().collect(Collectors.toList());
+            assertEquals(List.of(2, 4, 4), batchSizes);
+            Map<String, TaskResult.Status> statuses = new HashMap<>();
+            server.getTaskUpdates().forEach(result -> statuses.put(result.getTaskId(), result.getStatus()));
+            // The worker leaves out t0, which fails on its own
+            assertEquals(TaskResult.Status.FAILED, statuses.get("t0"));
+            for (int i = 1; i < 10; i++) {
+                assertEquals(TaskResult.Status.COMPLETED, statuses.get("t" + i));
+            }
+            assertEquals(0, taskRunner.drain(5_000));
+        }
+    }
+
+    @Test
+    void batchNotFullWaitsForTheLingerTime() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            RecordingWorker worker = new RecordingWorker(4, 200);
+            TaskRunner taskRunner = taskRunner(worker, taskClient);
+            server.addTasks(task("t1"), task("t2"));
+            assertEquals(0, taskRunner.pollOnce());
+            server.addTasks(task("t3"));
+            assertEquals(0, taskRunner.pollOnce());
+
+            long delay = taskRunner.pollOnce();
+            assertTrue(delay > 0 && delay <= 200, "next poll should happen by the time the batch is due: " + delay);
+            assertTrue(worker.batches.isEmpty());
+
+            awaitTrue(() -> {
+                taskRunner.pollOnce();
+                return server.getTaskUpdates().size() == 3;
+            });
+            assertEquals(1, worker.batches.size());
+            assertEquals(3, worker.batches.get(0).size());
+            assertEquals(0, taskRunner.drain(5_000));
+        }
+    }
+
+    private static TaskRunner taskRunner(BatchWorker worker, OrkesTaskClient taskClient) {
+        return new TaskRunner.Builder(worker, taskClient)
+                .withUpdateRetryCount(1)
+                .withWorkerNamePrefix("batch-worker-%d")
+                .withThreadCount(10)
+                .build();
+    }
+
+    private static Task task(String taskId) {
+        Task task = new Task();
+        task.setTaskId(taskId);
+        task.setTaskType(TASK_TYPE);
+        task.setTaskDefName(TASK_TYPE);
+        task.setWorkflowInstanceId("workflow");
+        task.setStatus(Task.Status.IN_PROGRESS);
+        return task;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not met in time");
+            Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static class RecordingWorker implements BatchWorker {
+
+        private final int batchSize;
+
+        private final int lingerMillis;
+
+        private final List<List<Task>> batches = new CopyOnWriteArrayList<>();
+
+        private RecordingWorker(int batchSize, int lingerMillis) {
+            this.batchSize = batchSize;
+            this.lingerMillis = lingerMillis;
+        }
+
+        @Override
+        public String getTaskDefName() {
+            return TASK_TYPE;
+        }
+
+        @Override
+        public List<TaskResult> execute(List<Task> tasks) {
+            batches.add(tasks);
+            List<TaskResult> results = new ArrayList<>();
+            for (Task task : tasks) {
+                if (!"t0".equals(task.getTaskId())) {
+                    TaskResult result = new TaskResult(task);
+                    result.setStatus(TaskResult.Status.COMPLETED);
+                    results.add(result);
+                }
+            }
+            return results;
+        }
+
+        @Override
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        @Override
+        public int getBatchLingerMillis() {
+            return lingerMillis;
+        }
+    }
+}
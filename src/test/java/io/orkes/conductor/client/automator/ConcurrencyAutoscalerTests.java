@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyAutoscalerTests {
+
+    @Test
+    void limitGrowsAdditivelyWhileTasksAreWaiting() {
+        ConcurrencyAutoscaler.Controller controller = new ConcurrencyAutoscaler.Controller(10, 110);
+        int limit = 10;
+        for (int i = 0; i < 5; i++) {
+            int next = controller.next(limit, limit, 1000, 100);
+            assertEquals(limit + 10, next);
+            assertEquals(ConcurrencyAutoscaler.INCREASE, controller.getLastDecision());
+            limit = next;
+        }
+    }
+
+    @Test
+    void limitIsCutWhenExecutionTimeDegrades() {
+        ConcurrencyAutoscaler.Controller controller = new ConcurrencyAutoscaler.Controller(10, 110);
+        assertEquals(110, controller.next(100, 100, 1000, 100));
+        int next = controller.next(110, 110, 1000, 2000);
+        assertEquals((int) (110 * ConcurrencyAutoscaler.DECREASE_FACTOR), next);
+        assertEquals(ConcurrencyAutoscaler.LATENCY_DECREASE, controller.getLastDecision());
+    }
+
+    @Test
+    void limitShrinksWhenIdleAndStaysWithinBounds() {
+        ConcurrencyAutoscaler.Controller controller = new ConcurrencyAutoscaler.Controller(5, 25);
+        int limit = 25;
+        for (int i = 0; i < 50; i++) {
+            limit = controller.next(limit, 0, 0, -1);
+        }
+        assertEquals(5, limit);
+        assertEquals(ConcurrencyAutoscaler.HOLD, controller.getLastDecision());
+
+        for (int i = 0; i < 50; i++) {
+            limit = controller.next(limit, limit, 1000, -1);
+        }
+        assertEquals(25, limit);
+    }
+
+    @Test
+    void resizableSemaphoreTracksPermitsInUse() throws Exception {
+        ResizableSemaphore semaphore = new ResizableSemaphore(4);
+        semaphore.acquire(3);
+        semaphore.resize(2);
+        assertEquals(-1, semaphore.availablePermits());
+        assertFalse(semaphore.tryAcquire());
+        semaphore.release(2);
+        assertTrue(semaphore.tryAcquire());
+        semaphore.resize(5);
+        assertEquals(3, semaphore.availablePermits());
+        assertEquals(2, semaphore.getUsedPermits());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+import io.orkes.conductor.client.util.FakeConductorServer;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DrainTests {
+
+    private static final String TASK_TYPE = "drain_task";
+
+    @Test
+    void drainWaitsForTheExecutingTasks() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            TaskRunner taskRunner = taskRunner(worker(300, null), taskClient);
+            server.addTasks(task("t1"), task("t2"));
+
+            taskRunner.pollOnce();
+            assertEquals(0, taskRunner.drain(5_000));
+
+            assertEquals(2, server.getTaskUpdates().size());
+            assertTrue(taskRunner.getExecutorService().isTerminated());
+        }
+    }
+
+    @Test
+    void tasksStillExecutingAfterTheTimeoutAreAbandoned() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            CountDownLatch release = new CountDownLatch(1);
+            TaskRunner taskRunner = taskRunner(worker(0, release), taskClient);
+            server.addTasks(task("t1"), task("t2"));
+
+            taskRunner.pollOnce();
+            assertEquals(2, taskRunner.drain(200));
+            assertTrue(taskRunner.getExecutorService().isShutdown());
+            release.countDown();
+        }
+    }
+
+    @Test
+    void shutdownStopsPollingAndCompletesPolledTasks() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            TaskRunnerConfigurer configurer =
+                    new TaskRunnerConfigurer.Builder(taskClient, List.of(worker(300, null)))
+                            .withThreadCount(2)
+                            .withShutdownGracePeriodSeconds(5)
+                            .build();
+            server.addTasks(task("t1"), task("t2"));
+            configurer.init();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (configurer.getInFlightTasks().size() < 2 && System.currentTimeMillis() < deadline) {
+                Uninterruptibles.sleepUninterruptibly(5, TimeUnit.MILLISECONDS);
+            }
+
+            configurer.shutdown();
+            // Tasks added once the drain started are not leased anymore
+            server.addTasks(task("t3"));
+            Uninterruptibles.sleepUninterruptibly(300, TimeUnit.MILLISECONDS);
+
+            assertEquals(2, server.getTaskUpdates().size());
+            assertTrue(configurer.getInFlightTasks().isEmpty());
+        }
+    }
+
+    private static TaskRunner taskRunner(Worker worker, OrkesTaskClient taskClient) {
+        return new TaskRunner.Builder(worker, taskClient)
+                .withUpdateRetryCount(1)
+                .withWorkerNamePrefix("drain-worker-%d")
+                .withThreadCount(2)
+                .build();
+    }
+
+    private static Task task(String taskId) {
+        Task task = new Task();
+        task.setTaskId(taskId);
+        task.setTaskType(TASK_TYPE);
+        task.setTaskDefName(TASK_TYPE);
+        task.setWorkflowInstanceId("workflow");
+        task.setStatus(Task.Status.IN_PROGRESS);
+        return task;
+    }
+
+    private static Worker worker(long executionMillis, CountDownLatch release) {
+        return Worker.create(TASK_TYPE, task -> {
+            Uninterruptibles.sleepUninterruptibly(executionMillis, TimeUnit.MILLISECONDS);
+            if (release != null) {
+                Uninterruptibles.awaitUninterruptibly(release);
+            }
+            TaskResult result = new TaskResult(task);
+            result.setStatus(TaskResult.Status.COMPLETED);
+            return result;
+        });
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+import io.orkes.conductor.client.util.FakeConductorServer;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InFlightTaskTests {
+
+    private static final String TASK_TYPE = "blocking_task";
+
+    @Test
+    void executingTasksAreRegisteredAndStuckOnesReported() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            CountDownLatch release = new CountDownLatch(1);
+            TaskRunner taskRunner = new TaskRunner.Builder(new BlockingWorker(release), taskClient)
+                    .withUpdateRetryCount(1)
+                    .withWorkerNamePrefix("blocking-worker-%d")
+                    .withThreadCount(2)
+                    .build();
+            server.addTasks(task("t1", 1), task("t2", 0));
+
+            assertEquals(0, taskRunner.pollOnce());
+            InFlightTaskRegistry registry = taskRunner.getInFlightTaskRegistry();
+            awaitTrue(() -> registry.size() == 2);
+            List<InFlightTask> tasks = new ArrayList<>(registry.getTasks());
+            for (InFlightTask task : tasks) {
+                assertEquals(TASK_TYPE, task.getTaskType());
+                assertEquals("workflow", task.getWorkflowInstanceId());
+                assertTrue(task.getThread().getName().startsWith("blocking-worker-"));
+            }
+
+            Uninterruptibles.sleepUninterruptibly(20, TimeUnit.MILLISECONDS);
+            StuckTaskWatchdog watchdog = new StuckTaskWatchdog(List.of(taskRunner), 0.01);
+            watchdog.check();
+            watchdog.shutdown();
+            assertTrue(registry.getOldestAgeMillis() >= 20);
+            for (InFlightTask task : tasks) {
+                // The task without a response timeout is never reported
+                assertEquals("t1".equals(task.getTaskId()), task.isStuck());
+            }
+
+            release.countDown();
+            awaitTrue(() -> server.getTaskUpdates().size() == 2);
+            awaitTrue(() -> registry.size() == 0);
+            assertEquals(0, registry.getOldestAgeMillis());
+            assertEquals(0, taskRunner.drain(5_000));
+        }
+    }
+
+    private static Task task(String taskId, long responseTimeoutSeconds) {
+        Task task = new Task();
+        task.setTaskId(taskId);
+        task.setTaskType(TASK_TYPE);
+        task.setTaskDefName(TASK_TYPE);
+        task.setWorkflowInstanceId("workflow");
+        task.setStatus(Task.Status.IN_PROGRESS);
+        task.setResponseTimeoutSeconds(responseTimeoutSeconds);
+        return task;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not met in time");
+            Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static class BlockingWorker implements Worker {
+
+        private final CountDownLatch release;
+
+        private BlockingWorker(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String getTaskDefName() {
+            return TASK_TYPE;
+        }
+
+        @Override
+        public TaskResult execute(Task task) {
+            Uninterruptibles.awaitUninterruptibly(release);
+            TaskResult result = new TaskResult(task);
+            result.setStatus(TaskResult.Status.COMPLETED);
+            return result;
+        }
+    }
+}
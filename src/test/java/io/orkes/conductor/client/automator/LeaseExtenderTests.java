@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeaseExtenderTests {
+
+    @Test
+    void leaseIsExtendedOnlyForTasksCloseToTheirTimeout() {
+        List<TaskResult> sent = new CopyOnWriteArrayList<>();
+        LeaseExtender leaseExtender = new LeaseExtender(result -> {
+            sent.add(result);
+            return CompletableFuture.completedFuture(null);
+        });
+        InFlightTaskRegistry registry = new InFlightTaskRegistry("test_task", "worker");
+        leaseExtender.register(registry);
+        long now = System.currentTimeMillis();
+        registry.add(task("due", 60, now - 55_000), null);
+        registry.add(task("not_due", 60, now), null);
+        registry.add(task("no_timeout", 0, now - 55_000), null);
+
+        leaseExtender.extendDueLeases();
+
+        assertEquals(1, sent.size());
+        assertEquals("due", sent.get(0).getTaskId());
+        assertEquals("worker", sent.get(0).getWorkerId());
+        assertTrue(sent.get(0).isExtendLease());
+        assertEquals(TaskResult.Status.IN_PROGRESS, sent.get(0).getStatus());
+
+        // The lease was just extended, nothing more is due
+        leaseExtender.extendDueLeases();
+        assertEquals(1, sent.size());
+        leaseExtender.shutdown();
+    }
+
+    @Test
+    void noHeartbeatIsSentForTasksThatCompleted() {
+        List<TaskResult> sent = new CopyOnWriteArrayList<>();
+        LeaseExtender leaseExtender = new LeaseExtender(result -> {
+            sent.add(result);
+            return CompletableFuture.completedFuture(null);
+        });
+        InFlightTaskRegistry registry = new InFlightTaskRegistry("test_task", "worker");
+        leaseExtender.register(registry);
+        Task task = task("done", 60, System.currentTimeMillis() - 55_000);
+        registry.add(task, null);
+        registry.remove(task);
+
+        leaseExtender.extendDueLeases();
+
+        assertTrue(sent.isEmpty());
+        leaseExtender.shutdown();
+    }
+
+    private static Task task(String taskId, long responseTimeoutSeconds, long startTime) {
+        Task task = new Task();
+        task.setTaskId(taskId);
+        task.setTaskDefName("test_task");
+        task.setResponseTimeoutSeconds(responseTimeoutSeconds);
+        task.setStartTime(startTime);
+        return task;
+    }
+}
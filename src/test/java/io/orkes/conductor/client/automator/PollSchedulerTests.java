@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PollSchedulerTests {
+
+    @Test
+    void backoffGrowsAndIsCappedAtMaxIdleDelay() {
+        PollScheduler scheduler = new PollScheduler(100, 250);
+        long previousUpperBound = 0;
+        for (int i = 1; i <= 20; i++) {
+            long upperBound = Math.min(250, PollScheduler.MIN_BACKOFF_MILLIS << i);
+            long delay = scheduler.onEmptyPoll();
+            assertTrue(delay >= upperBound / 2, "delay " + delay + " too small at attempt " + i);
+            assertTrue(delay <= upperBound, "delay " + delay + " too large at attempt " + i);
+            assertTrue(upperBound >= previousUpperBound);
+            previousUpperBound = upperBound;
+        }
+        assertEquals(250, previousUpperBound);
+    }
+
+    @Test
+    void idleDelayIsNeverBelowPollingInterval() {
+        PollScheduler scheduler = new PollScheduler(100, 200);
+        // Backs off past the polling interval
+        for (int i = 0; i < 7; i++) {
+            scheduler.onEmptyPoll();
+        }
+        for (int i = 0; i < 1_000; i++) {
+            long delay = scheduler.onEmptyPoll();
+            assertTrue(delay >= 100, "delay " + delay + " below the polling interval");
+            assertTrue(delay <= 200, "delay " + delay + " above the max idle delay");
+        }
+
+        // A max idle delay below the polling interval is raised to it
+        scheduler.setIntervals(100, 10);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(100, scheduler.onEmptyPoll());
+        }
+    }
+
+    @Test
+    void backoffResetsWhenTasksAreReceived() {
+        PollScheduler scheduler = new PollScheduler(1000, 2000);
+        for (int i = 0; i < 20; i++) {
+            scheduler.onEmptyPoll();
+        }
+        scheduler.onTasksReceived();
+        assertTrue(scheduler.onEmptyPoll() <= 2);
+    }
+
+    @Test
+    void releasedPermitWakesUpWaitingRunnerOnce() {
+        PollScheduler scheduler = new PollScheduler(60_000, 60_000);
+        AtomicInteger wakeUps = new AtomicInteger();
+        scheduler.setWakeUpListener(wakeUps::incrementAndGet);
+
+        assertFalse(scheduler.onPermitsReleased());
+        scheduler.waitForPermits();
+        assertTrue(scheduler.isWaitingForPermits());
+        assertTrue(scheduler.onPermitsReleased());
+        assertFalse(scheduler.onPermitsReleased());
+
+        assertEquals(1, wakeUps.get());
+        assertFalse(scheduler.isWaitingForPermits());
+    }
+}
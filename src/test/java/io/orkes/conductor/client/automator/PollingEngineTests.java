@@ -0,0 +1,103 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+import io.orkes.conductor.client.util.FakeConductorServer;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PollingEngineTests {
+
+    private static final int IDLE_TASK_TYPES = 20;
+
+    private static final int BUSY_TASKS = 30;
+
+    @Test
+    void idleTaskTypesDoNotDelayBusyOne() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            List<Worker> workers = new ArrayList<>();
+            for (int i = 0; i < IDLE_TASK_TYPES; i++) {
+                workers.add(worker("idle_" + i));
+            }
+            workers.add(worker("busy"));
+            // A single engine thread, a server wait of 500 ms per idle poll would take 10 s a round
+            TaskRunnerConfigurer configurer =
+                    new TaskRunnerConfigurer.Builder(taskClient, workers)
+                            .withPollerThreadCount(1)
+                            .withTaskPollTimeout(500)
+                            .build();
+            configurer.init();
+            try {
+                Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+                for (int i = 0; i < BUSY_TASKS; i++) {
+                    server.addTasks(task("busy", i));
+                }
+
+                long deadline = System.currentTimeMillis() + 3_000;
+                while (server.getTaskUpdates().size() < BUSY_TASKS && System.currentTimeMillis() < deadline) {
+                    Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+                }
+                assertEquals(BUSY_TASKS, server.getTaskUpdates().size());
+            } finally {
+                configurer.shutdown();
+            }
+        }
+    }
+
+    private static Task task(String taskType, int index) {
+        Task task = new Task();
+        task.setTaskId(taskType + "-" + index);
+        task.setTaskType(taskType);
+        task.setTaskDefName(taskType);
+        task.setWorkflowInstanceId("workflow");
+        task.setStatus(Task.Status.IN_PROGRESS);
+        return task;
+    }
+
+    private static Worker worker(String taskType) {
+        return new Worker() {
+
+            @Override
+            public String getTaskDefName() {
+                return taskType;
+            }
+
+            @Override
+            public TaskResult execute(Task task) {
+                TaskResult result = new TaskResult(task);
+                result.setStatus(TaskResult.Status.COMPLETED);
+                return result;
+            }
+
+            @Override
+            public int getPollingInterval() {
+                return 100;
+            }
+        };
+    }
+}
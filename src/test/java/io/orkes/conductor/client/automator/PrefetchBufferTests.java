@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.common.metadata.tasks.Task;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrefetchBufferTests {
+
+    @Test
+    void nothingIsPrefetchedUntilExecutionTimeAndResponseTimeoutAreKnown() {
+        PrefetchBuffer buffer = new PrefetchBuffer("test_task", 100);
+        assertEquals(0, buffer.getWatermark(10));
+        buffer.recordExecutionTime(50);
+        assertEquals(0, buffer.getWatermark(10));
+        // Learned from a task that was started right away
+        buffer.recordResponseTimeout(task("t1", 1));
+        assertEquals(100, buffer.getWatermark(10));
+    }
+
+    @Test
+    void tasksWithoutResponseTimeoutFillTheBuffer() {
+        PrefetchBuffer buffer = new PrefetchBuffer("test_task", 100);
+        buffer.recordExecutionTime(60_000);
+        buffer.recordResponseTimeout(task("t1", 0));
+        assertEquals(100, buffer.getWatermark(1));
+    }
+
+    @Test
+    void watermarkKeepsBufferedTasksWithinResponseTimeout() {
+        PrefetchBuffer buffer = new PrefetchBuffer("test_task", 1000);
+        buffer.add(task("t1", 10));
+        buffer.recordExecutionTime(1000);
+        // 10 threads finishing a task every second start 50 tasks within half of the 10s timeout
+        assertEquals(50, buffer.getWatermark(10));
+        assertEquals(49, buffer.getRoom(10));
+    }
+
+    @Test
+    void tasksAreReturnedInPollOrder() {
+        PrefetchBuffer buffer = new PrefetchBuffer("test_task", 10);
+        buffer.add(task("t1", 60));
+        buffer.add(task("t2", 60));
+        assertEquals(2, buffer.size());
+        assertEquals("t1", buffer.poll().getTaskId());
+        assertEquals("t2", buffer.poll().getTaskId());
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    private static Task task(String taskId, long responseTimeoutSeconds) {
+        Task task = new Task();
+        task.setTaskId(taskId);
+        task.setTaskDefName("test_task");
+        task.setResponseTimeoutSeconds(responseTimeoutSeconds);
+        return task;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+import io.orkes.conductor.client.util.FakeConductorServer;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Compares a pool per task type with the shared executor under a skewed load: most of the tasks
+ * are of one type, so half of the threads of the per-type pools have nothing to do. Run the main
+ * method.
+ */
+public class SharedExecutorBenchmark {
+
+    private static final int THREADS_PER_TYPE = 8;
+
+    private static final int HEAVY_TASKS = 800;
+
+    private static final int LIGHT_TASKS = 40;
+
+    private static final long EXECUTION_MILLIS = 10;
+
+    public static void main(String[] args) throws Exception {
+        for (int round = 0; round < 2; round++) {
+            run("per-type pools", false);
+            run("shared executor", true);
+        }
+    }
+
+    private static void run(String name, boolean shared) throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            for (int i = 0; i < HEAVY_TASKS; i++) {
+                server.addTasks(task("heavy", i));
+            }
+            for (int i = 0; i < LIGHT_TASKS; i++) {
+                server.addTasks(task("light", i));
+            }
+            TaskRunnerConfigurer.Builder builder =
+                    new TaskRunnerConfigurer.Builder(taskClient, List.of(worker("heavy"), worker("light")))
+                            .withThreadCount(THREADS_PER_TYPE);
+            if (shared) {
+                builder.withSharedExecutor(THREADS_PER_TYPE * 2);
+            }
+            TaskRunnerConfigurer configurer = builder.build();
+
+            long start = System.nanoTime();
+            configurer.init();
+            while (server.getTaskUpdates().size() < HEAVY_TASKS + LIGHT_TASKS) {
+                Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+            }
+            long elapsed = System.nanoTime() - start;
+            configurer.shutdown();
+            System.out.printf(
+                    "%-16s %6d ms for %d tasks with %d threads%n",
+                    name,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    HEAVY_TASKS + LIGHT_TASKS,
+                    THREADS_PER_TYPE * 2);
+        }
+    }
+
+    private static Task task(String taskType, int index) {
+        Task task = new Task();
+        task.setTaskId(taskType + "-" + index);
+        task.setTaskType(taskType);
+        task.setTaskDefName(taskType);
+        task.setWorkflowInstanceId("workflow");
+        task.setStatus(Task.Status.IN_PROGRESS);
+        return task;
+    }
+
+    private static Worker worker(String taskType) {
+        return new Worker() {
+
+            @Override
+            public String getTaskDefName() {
+                return taskType;
+            }
+
+            @Override
+            public TaskResult execute(Task task) {
+                Uninterruptibles.sleepUninterruptibly(EXECUTION_MILLIS, TimeUnit.MILLISECONDS);
+                TaskResult result = new TaskResult(task);
+                result.setStatus(TaskResult.Status.COMPLETED);
+                return result;
+            }
+
+            @Override
+            public int getPollingInterval() {
+                return 10;
+            }
+        };
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedTaskExecutorTests {
+
+    @Test
+    void idleTaskTypeKeepsOnlyItsReservedThreads() {
+        SharedTaskExecutor executor = new SharedTaskExecutor(10, "test-%d");
+        SharedTaskExecutor.Share busy = executor.register("busy", 2, 1);
+        SharedTaskExecutor.Share idle = executor.register("idle", 3, 1);
+
+        // Everything but the threads reserved for the idle task type
+        assertEquals(7, busy.tryAcquire(100));
+        assertFalse(busy.hasRoom());
+
+        // The reserved threads are still there when the idle task type gets tasks
+        assertEquals(3, idle.tryAcquire(100));
+        assertEquals(0, idle.tryAcquire(1));
+
+        busy.release(7);
+        idle.release(3);
+        executor.shutdown(1_000);
+    }
+
+    @Test
+    void busyTaskTypesShareByWeight() {
+        SharedTaskExecutor executor = new SharedTaskExecutor(12, "test-%d");
+        SharedTaskExecutor.Share light = executor.register("light", 0, 1);
+        SharedTaskExecutor.Share heavy = executor.register("heavy", 0, 2);
+        light.setBusy(true);
+        heavy.setBusy(true);
+
+        assertEquals(4, light.tryAcquire(100));
+        assertEquals(8, heavy.tryAcquire(100));
+
+        // Once the light task type runs out of tasks, its share goes to the other one
+        light.release(4);
+        light.setBusy(false);
+        assertEquals(12, heavy.getLimit());
+        assertEquals(4, heavy.tryAcquire(100));
+        executor.shutdown(1_000);
+    }
+
+    @Test
+    void releaseWakesUpAllTaskTypes() {
+        SharedTaskExecutor executor = new SharedTaskExecutor(2, "test-%d");
+        SharedTaskExecutor.Share first = executor.register("first", 0, 1);
+        SharedTaskExecutor.Share second = executor.register("second", 0, 1);
+        AtomicInteger wakeUps = new AtomicInteger();
+        first.setWakeUpListener(wakeUps::incrementAndGet);
+        second.setWakeUpListener(wakeUps::incrementAndGet);
+
+        assertEquals(2, first.tryAcquire(2));
+        assertFalse(second.hasRoom());
+        first.release(1);
+
+        assertEquals(2, wakeUps.get());
+        assertTrue(second.hasRoom());
+        executor.shutdown(1_000);
+    }
+
+    @Test
+    void reservedThreadsCannotExceedThePool() {
+        SharedTaskExecutor executor = new SharedTaskExecutor(4, "test-%d");
+        executor.register("first", 3, 1);
+        assertThrows(IllegalArgumentException.class, () -> executor.register("second", 2, 1));
+        executor.shutdown(1_000);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+/**
+ * Compares the write throughput of the task result outbox when forcing the journal on every
+ * append with batched forces. Run the main method, results are written to a temporary directory.
+ */
+public class TaskResultOutboxBenchmark {
+
+    private static final int THREADS = 50;
+    private static final int RESULTS = 20_000;
+    private static final int CAPACITY = 256 * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        run("warmup", 2, RESULTS / 10);
+        run("force per append", 0, RESULTS);
+        run("batched (1 ms)", 1, RESULTS);
+        run("batched (5 ms)", 5, RESULTS);
+    }
+
+    private static void run(String name, long flushIntervalMillis, int results) throws Exception {
+        Path directory = Files.createTempDirectory("task-result-outbox");
+        TaskResultOutbox outbox = new TaskResultOutbox(directory, CAPACITY, flushIntervalMillis, 60_000, result -> null);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch latch = new CountDownLatch(results);
+        long start = System.nanoTime();
+        for (int i = 0; i < results; i++) {
+            executor.execute(
+                    () -> {
+                        try {
+                            outbox.acknowledge(outbox.append(taskResult()));
+                        } finally {
+                            latch.countDown();
+                        }
+                    });
+        }
+        latch.await();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        executor.shutdown();
+        outbox.shutdown();
+        System.out.printf(
+                "%-18s %8d results in %6d ms, %8.0f results/s%n",
+                name,
+                results,
+                elapsedMillis,
+                results * 1000.0 / Math.max(1, elapsedMillis));
+    }
+
+    private static TaskResult taskResult() {
+        TaskResult result = new TaskResult();
+        result.setTaskId(UUID.randomUUID().toString());
+        result.setWorkflowInstanceId("benchmark");
+        result.setStatus(TaskResult.Status.COMPLETED);
+        result.setOutputData(Map.of("result", UUID.randomUUID().toString()));
+        return result;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+import io.orkes.conductor.client.util.FakeConductorServer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskResultOutboxTests {
+
+    private static final int CAPACITY = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void releasedResultsAreReplayedInOrderOnceTheServerIsBack() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            TaskResultOutbox outbox = new TaskResultOutbox(directory, CAPACITY, 1, 60_000, taskClient::updateTaskAsync);
+
+            server.setAvailable(false);
+            outbox.release(outbox.append(taskResult("t1")));
+            outbox.release(outbox.append(taskResult("t2")));
+            outbox.replay();
+            assertEquals(2, outbox.getPendingCount());
+
+            server.setAvailable(true);
+            outbox.replay();
+
+            assertEquals(0, outbox.getPendingCount());
+            assertEquals(List.of("t1", "t2"), taskIds(server));
+            outbox.shutdown();
+        }
+    }
+
+    @Test
+    void rejectedResultIsDroppedWithoutBlockingTheOthers() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            server.rejectTaskUpdates("t1", 404);
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            TaskResultOutbox outbox = new TaskResultOutbox(directory, CAPACITY, 1, 60_000, taskClient::updateTaskAsync);
+            outbox.release(outbox.append(taskResult("t1")));
+            outbox.release(outbox.append(taskResult("t2")));
+
+            outbox.replay();
+
+            assertEquals(0, outbox.getPendingCount());
+            assertEquals(List.of("t2"), taskIds(server));
+            outbox.shutdown();
+        }
+    }
+
+    @Test
+    void resultIsDroppedOnceItRunsOutOfAttempts() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            server.rejectTaskUpdates("t1", 503);
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            TaskResultOutbox outbox = new TaskResultOutbox(directory, CAPACITY, 1, 60_000, 3, taskClient::updateTaskAsync);
+            outbox.release(outbox.append(taskResult("t1")));
+            outbox.release(outbox.append(taskResult("t2")));
+
+            outbox.replay();
+            // The failing result is skipped, the next one still goes through
+            assertEquals(List.of("t2"), taskIds(server));
+            assertEquals(1, outbox.getPendingCount());
+            outbox.replay();
+            assertEquals(1, outbox.getPendingCount());
+            outbox.replay();
+            assertEquals(0, outbox.getPendingCount());
+            outbox.shutdown();
+        }
+    }
+
+    @Test
+    void unacknowledgedResultsSurviveARestart() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            TaskResultOutbox outbox = new TaskResultOutbox(directory, CAPACITY, 1, 60_000, taskClient::updateTaskAsync);
+            long acknowledged = outbox.append(taskResult("t1"));
+            outbox.append(taskResult("t2"));
+            outbox.append(taskResult("t3"));
+            outbox.acknowledge(acknowledged);
+            outbox.shutdown();
+
+            TaskResultOutbox reopened = new TaskResultOutbox(directory, CAPACITY, 1, 60_000, taskClient::updateTaskAsync);
+            assertEquals(2, reopened.getPendingCount());
+            reopened.replay();
+
+            assertEquals(0, reopened.getPendingCount());
+            assertEquals(List.of("t2", "t3"), taskIds(server));
+            reopened.shutdown();
+        }
+    }
+
+    @Test
+    void journalIsCompactedOnceResultsAreAcknowledged() throws Exception {
+        TaskResultOutbox outbox = new TaskResultOutbox(directory, 64 * 1024, 0, 60_000, result -> null);
+        // Many times the capacity of the journal goes through it
+        for (int i = 0; i < 5_000; i++) {
+            outbox.acknowledge(outbox.append(taskResult("t" + i)));
+        }
+        long pending = outbox.append(taskResult("pending"));
+        assertEquals(1, outbox.getPendingCount());
+        outbox.shutdown();
+        assertTrue(Files.exists(directory.resolve(TaskResultOutbox.JOURNAL_FILE)));
+
+        TaskResultOutbox reopened = new TaskResultOutbox(directory, 64 * 1024, 0, 60_000, result -> null);
+        assertEquals(1, reopened.getPendingCount());
+        reopened.acknowledge(pending);
+        assertEquals(0, reopened.getPendingCount());
+        reopened.shutdown();
+    }
+
+    private static List<String> taskIds(FakeConductorServer server) {
+        return server.getTaskUpdates().stream().map(TaskResult::getTaskId).collect(Collectors.toList());
+    }
+
+    private static TaskResult taskResult(String taskId) {
+        TaskResult result = new TaskResult();
+        result.setTaskId(taskId);
+        result.setWorkflowInstanceId("workflow");
+        result.setStatus(TaskResult.Status.COMPLETED);
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+import io.orkes.conductor.client.util.FakeConductorServer;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskUpdateBatcherTests {
+
+    @Test
+    void fullBatchIsSentRightAway() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            TaskUpdateBatcher batcher = new TaskUpdateBatcher(taskClient(server), 3, 60_000);
+
+            CompletableFuture<Void> first = batcher.submit(result("t1"));
+            CompletableFuture<Void> second = batcher.submit(result("t2"));
+            Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+            assertEquals(2, batcher.getPendingCount());
+            assertTrue(server.getTaskUpdates().isEmpty());
+
+            CompletableFuture<Void> third = batcher.submit(result("t3"));
+            CompletableFuture.allOf(first, second, third).get(5, TimeUnit.SECONDS);
+            assertEquals(3, server.getTaskUpdates().size());
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    void partialBatchIsSentAfterLingerFromFirstResult() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            TaskUpdateBatcher batcher = new TaskUpdateBatcher(taskClient(server), 100, 300);
+            // No result for a while, the linger starts with the first result only
+            Uninterruptibles.sleepUninterruptibly(400, TimeUnit.MILLISECONDS);
+
+            long start = System.nanoTime();
+            CompletableFuture<Void> update = batcher.submit(result("t1"));
+            Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+            assertEquals(1, batcher.getPendingCount());
+
+            update.get(5, TimeUnit.SECONDS);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 290);
+            assertEquals(1, server.getTaskUpdates().size());
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    void failuresAreReportedPerTask() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            server.rejectTaskUpdates("rejected", 404);
+            TaskUpdateBatcher batcher = new TaskUpdateBatcher(taskClient(server), 2, 60_000);
+
+            CompletableFuture<Void> accepted = batcher.submit(result("accepted"));
+            CompletableFuture<Void> rejected = batcher.submit(result("rejected"));
+
+            accepted.get(5, TimeUnit.SECONDS);
+            assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+            assertEquals(1, server.getTaskUpdates().size());
+            assertEquals("accepted", server.getTaskUpdates().get(0).getTaskId());
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    void failedUpdateIsRetriedAfterADelay() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = taskClient(server);
+            TaskUpdateBatcher batcher = new TaskUpdateBatcher(taskClient, 10, 10);
+            TaskRunner taskRunner = new TaskRunner.Builder(Worker.create("batched_task", TaskResult::new), taskClient)
+                    .withUpdateRetryCount(3)
+                    .withWorkerNamePrefix("batched-worker-%d")
+                    .withTaskUpdateBatcher(batcher)
+                    .build();
+            server.failTaskUpdates(2);
+            server.addTasks(task("t1"));
+
+            long start = System.nanoTime();
+            taskRunner.pollOnce();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (server.getTaskUpdates().isEmpty() && System.currentTimeMillis() < deadline) {
+                Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+            }
+
+            // Two failed attempts, each followed by the same delay as the blocking retries
+            assertEquals(1, server.getTaskUpdates().size());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 2 * 2_000);
+            assertEquals(0, taskRunner.drain(5_000));
+            batcher.shutdown();
+        }
+    }
+
+    private static OrkesTaskClient taskClient(FakeConductorServer server) {
+        return new OrkesTaskClient(new ApiClient(server.getBasePath()));
+    }
+
+    private static Task task(String taskId) {
+        Task task = new Task();
+        task.setTaskId(taskId);
+        task.setTaskType("batched_task");
+        task.setTaskDefName("batched_task");
+        task.setWorkflowInstanceId("workflow");
+        task.setStatus(Task.Status.IN_PROGRESS);
+        return task;
+    }
+
+    private static TaskResult result(String taskId) {
+        TaskResult result = new TaskResult();
+        result.setTaskId(taskId);
+        result.setWorkflowInstanceId("workflow");
+        result.setStatus(TaskResult.Status.COMPLETED);
+        return result;
+    }
+}
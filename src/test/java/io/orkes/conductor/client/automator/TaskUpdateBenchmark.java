@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+import io.orkes.conductor.client.util.FakeConductorServer;
+
+/**
+ * Compares one blocking updateTask call per result with the batched update pipeline, against
+ * an in-process fake server. Run the main method, no Conductor server is needed.
+ */
+public class TaskUpdateBenchmark {
+
+    private static final int THREADS = 50;
+    private static final int UPDATES = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            server.setLatencyMillis(2);
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+
+            run("warmup", THREADS, UPDATES / 10, result -> taskClient.updateTask(result));
+            run("one call per result", THREADS, UPDATES, result -> taskClient.updateTask(result));
+
+            TaskUpdateBatcher batcher = new TaskUpdateBatcher(taskClient, 50, 5);
+            run("batched (50 / 5ms)", THREADS, UPDATES, result -> batcher.submit(result).get());
+            batcher.shutdown();
+        }
+    }
+
+    private static void run(String name, int threads, int updates, Update update)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(updates);
+        AtomicLong totalLatencyNanos = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            executor.execute(
+                    () -> {
+                        TaskResult result = new TaskResult();
+                        result.setTaskId(UUID.randomUUID().toString());
+                        result.setWorkflowInstanceId("benchmark");
+                        result.setStatus(TaskResult.Status.COMPLETED);
+                        long callStart = System.nanoTime();
+                        try {
+                            update.send(result);
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        } finally {
+                            totalLatencyNanos.addAndGet(System.nanoTime() - callStart);
+                            latch.countDown();
+                        }
+                    });
+        }
+        latch.await();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        executor.shutdown();
+        System.out.printf(
+                "%-22s %8d updates in %6d ms, %8.0f updates/s, avg latency %6.2f ms, errors %d%n",
+                name,
+                updates,
+                elapsedMillis,
+                updates * 1000.0 / Math.max(1, elapsedMillis),
+                totalLatencyNanos.get() / 1_000_000.0 / updates,
+                errors.get());
+    }
+
+    @FunctionalInterface
+    private interface Update {
+        void send(TaskResult result) throws Exception;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskUpdateStageTests {
+
+    @Test
+    void failedUpdatesAreRetriedUntilAcknowledged() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        TaskUpdateStage stage =
+                new TaskUpdateStage(
+                        "test-stage",
+                        10,
+                        3,
+                        1,
+                        result -> {
+                            if (attempts.incrementAndGet() < 3) {
+                                return CompletableFuture.failedFuture(new RuntimeException("server unavailable"));
+                            }
+                            return CompletableFuture.completedFuture(null);
+                        });
+
+        stage.submit("test_task", taskResult("t1")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, attempts.get());
+        assertEquals(0, stage.getUnacknowledgedCount());
+        assertTrue(stage.shutdown(1000));
+    }
+
+    @Test
+    void futureFailsWhenRetriesAreExhausted() {
+        AtomicInteger attempts = new AtomicInteger();
+        TaskUpdateStage stage =
+                new TaskUpdateStage(
+                        "test-stage",
+                        10,
+                        2,
+                        1,
+                        result -> {
+                            attempts.incrementAndGet();
+                            throw new RuntimeException("server unavailable");
+                        });
+
+        CompletableFuture<Void> future = stage.submit("test_task", taskResult("t1"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertEquals("server unavailable", e.getCause().getMessage());
+        assertEquals(3, attempts.get());
+        assertEquals(0, stage.getUnacknowledgedCount());
+        stage.shutdown(1000);
+    }
+
+    private static TaskResult taskResult(String taskId) {
+        TaskResult result = new TaskResult();
+        result.setTaskId(taskId);
+        result.setStatus(TaskResult.Status.COMPLETED);
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTests {
+
+    @Test
+    void burstIsAvailableRightAway() {
+        TokenBucket bucket = new TokenBucket(1, 5);
+        assertEquals(5, bucket.tryAcquire(20));
+        assertEquals(0, bucket.tryAcquire(20));
+        long wait = bucket.millisUntilAvailable();
+        assertTrue(wait > 0 && wait <= 1000, "unexpected wait " + wait);
+    }
+
+    @Test
+    void unusedTokensAreRefunded() {
+        TokenBucket bucket = new TokenBucket(0.001, 3);
+        assertEquals(3, bucket.tryAcquire(3));
+        bucket.refund(2);
+        assertEquals(2, bucket.tryAcquire(10));
+    }
+
+    @Test
+    void tokensAreAddedAtTheConfiguredRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 1);
+        assertEquals(1, bucket.tryAcquire(1));
+        Thread.sleep(50);
+        // The burst capacity caps the accumulated tokens
+        assertEquals(1, bucket.tryAcquire(10));
+    }
+
+    @Test
+    void noLimitWhenRateIsNotSet() {
+        TokenBucket bucket = new TokenBucket(0, 0);
+        assertFalse(bucket.isLimited());
+        assertEquals(1000, bucket.tryAcquire(1000));
+        assertEquals(0, bucket.millisUntilAvailable());
+
+        bucket.update(10, 0);
+        assertTrue(bucket.isLimited());
+        // Tokens do not accumulate while the limit is disabled
+        assertTrue(bucket.tryAcquire(10) <= 1);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.spectator.api.Id;
+import com.netflix.spectator.api.Spectator;
+import com.netflix.spectator.api.patterns.PolledMeter;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadExecutorTests {
+
+    @Test
+    void unsupportedJvmIsRejected() {
+        assumeFalse(VirtualThreadExecutor.isSupported());
+        assertThrows(UnsupportedOperationException.class, () -> new VirtualThreadExecutor("vt-", 2, null));
+    }
+
+    @Test
+    void tasksRunOnVirtualThreads() throws Exception {
+        assumeTrue(VirtualThreadExecutor.isSupported());
+        VirtualThreadExecutor executor = new VirtualThreadExecutor("vt-", 2, null);
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+        executor.execute(() -> thread.complete(Thread.currentThread()));
+
+        assertEquals(true, Thread.class.getMethod("isVirtual").invoke(thread.get(5, TimeUnit.SECONDS)));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, executor.getActiveCount());
+    }
+
+    @Test
+    void fixedGaugesSurviveGarbageCollection() {
+        assumeTrue(VirtualThreadExecutor.isSupported());
+        DefaultRegistry registry = new DefaultRegistry();
+        Spectator.globalRegistry().add(registry);
+        try {
+            VirtualThreadExecutor executor = new VirtualThreadExecutor("vt-gauges-", 7, null);
+            System.gc();
+            PolledMeter.update(Spectator.globalRegistry());
+
+            Id id = registry.createId("threadpool.maxThreads").withTag("id", "vt-gauges-").withTag("type", "virtual");
+            assertEquals(7, registry.gauge(id).value());
+            executor.shutdown();
+        } finally {
+            Spectator.globalRegistry().remove(registry);
+        }
+    }
+
+    @Test
+    void taskRunnerFallsBackToPlatformThreads() {
+        OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient("http://localhost:1/api"));
+        TaskRunner taskRunner = new TaskRunner.Builder(worker(), taskClient)
+                .withUpdateRetryCount(1)
+                .withWorkerNamePrefix("vt-runner-%d")
+                .withThreadCount(2)
+                .withVirtualThreads(true)
+                .build();
+
+        assertEquals(VirtualThreadExecutor.isSupported(), taskRunner.getExecutorService() instanceof VirtualThreadExecutor);
+        taskRunner.getExecutorService().shutdown();
+    }
+
+    private static Worker worker() {
+        return Worker.create("vt_task", task -> {
+            TaskResult result = new TaskResult(task);
+            result.setStatus(TaskResult.Status.COMPLETED);
+            return result;
+        });
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.http.OrkesTaskClient;
+import io.orkes.conductor.client.util.FakeConductorServer;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WeightedDomainsTests {
+
+    private static final String TASK_TYPE = "tenant_task";
+
+    @Test
+    void tasksAreSplitByWeight() {
+        WeightedDomains domains = new WeightedDomains(weights("gold", 3, "silver", 1));
+        boolean[] all = {true, true};
+
+        assertArrayEquals(new int[] {6, 2}, domains.allocate(8, all));
+        // One task at a time, the small domain still gets its turn
+        int[] total = new int[2];
+        for (int i = 0; i < 8; i++) {
+            int[] allocation = domains.allocate(1, all);
+            total[0] += allocation[0];
+            total[1] += allocation[1];
+        }
+        assertArrayEquals(new int[] {6, 2}, total);
+        assertArrayEquals(new int[] {0, 4}, domains.allocate(4, new boolean[] {false, true}));
+        assertArrayEquals(new int[] {0, 0}, domains.allocate(4, new boolean[] {false, false}));
+    }
+
+    @Test
+    void invalidWeightsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new WeightedDomains(Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> new WeightedDomains(weights("gold", 0, "silver", 1)));
+    }
+
+    @Test
+    void shareOfAnEmptyDomainGoesToTheOthers() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+            Map<String, String> executedDomains = new ConcurrentHashMap<>();
+            TaskRunner taskRunner = new TaskRunner.Builder(worker(executedDomains), taskClient)
+                    .withUpdateRetryCount(1)
+                    .withWorkerNamePrefix("tenant-worker-%d")
+                    .withThreadCount(4)
+                    .withWeightedDomains(new WeightedDomains(weights("gold", 3, "silver", 1)))
+                    .build();
+            server.addTasks(task("g1", "gold"), task("s1", "silver"), task("s2", "silver"), task("s3", "silver"));
+
+            // gold is asked for 3 tasks but has one, the 2 left go to silver
+            assertEquals(0, taskRunner.pollOnce());
+            awaitTrue(() -> server.getTaskUpdates().size() == 4);
+            assertEquals("gold", executedDomains.get("g1"));
+            assertEquals("silver", executedDomains.get("s3"));
+            assertEquals(0, taskRunner.drain(5_000));
+        }
+    }
+
+    private static Map<String, Integer> weights(String first, int firstWeight, String second, int secondWeight) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        weights.put(first, firstWeight);
+        weights.put(second, secondWeight);
+        return weights;
+    }
+
+    private static Task task(String taskId, String domain) {
+        Task task = new Task();
+        task.setTaskId(taskId);
+        task.setTaskType(TASK_TYPE);
+        task.setTaskDefName(TASK_TYPE);
+        task.setWorkflowInstanceId("workflow");
+        task.setStatus(Task.Status.IN_PROGRESS);
+        task.setDomain(domain);
+        return task;
+    }
+
+    private static Worker worker(Map<String, String> executedDomains) {
+        return new Worker() {
+
+            @Override
+            public String getTaskDefName() {
+                return TASK_TYPE;
+            }
+
+            @Override
+            public TaskResult execute(Task task) {
+                executedDomains.put(task.getTaskId(), task.getDomain());
+                TaskResult result = new TaskResult(task);
+                result.setStatus(TaskResult.Status.COMPLETED);
+                return result;
+            }
+        };
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not met in time");
+            Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.automator;
+
+import java.util.Map;
+import java.util.Optional;
+
+import com.netflix.conductor.client.config.PropertyFactory;
+import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+/**
+ * Measures the per-poll cost of reading the worker configuration: the lookups the poll loop used
+ * to do on every poll against the {@link WorkerConfig} snapshot. Run the main method.
+ */
+public class WorkerConfigBenchmark {
+
+    private static final int POLLS = 200_000;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        Worker worker = Worker.create("benchmark_task", task -> new TaskResult(task));
+        WorkerConfig workerConfig = new WorkerConfig(worker, Map.of());
+
+        for (int round = 0; round < 3; round++) {
+            run("per-poll lookups", () -> lookups(worker));
+            run("snapshot", () -> snapshot(workerConfig));
+        }
+    }
+
+    private static Object lookups(Worker worker) {
+        Boolean discoveryOverride =
+                Optional.ofNullable(
+                                PropertyFactory.getBoolean(
+                                        worker.getTaskDefName(), WorkerConfig.OVERRIDE_DISCOVERY, null))
+                        .orElseGet(
+                                () ->
+                                        PropertyFactory.getBoolean(
+                                                TaskRunner.ALL_WORKERS, WorkerConfig.OVERRIDE_DISCOVERY, false));
+        if (discoveryOverride || worker.paused()) {
+            return null;
+        }
+        return worker.getIdentity();
+    }
+
+    private static Object snapshot(WorkerConfig workerConfig) {
+        if (workerConfig.isDiscoveryOverride() || workerConfig.isPaused()) {
+            return null;
+        }
+        return workerConfig.getIdentity();
+    }
+
+    private static void run(String name, Poll poll) {
+        long start = System.nanoTime();
+        for (int i = 0; i < POLLS; i++) {
+            sink = poll.read();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-18s %10.1f ns per poll%n", name, (double) elapsed / POLLS);
+    }
+
+    @FunctionalInterface
+    private interface Poll {
+        Object read();
+    }
+}
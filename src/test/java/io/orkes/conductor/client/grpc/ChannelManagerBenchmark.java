@@ -0,0 +1,56 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.grpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.orkes.conductor.client.ApiClient;
+
+import io.grpc.ManagedChannel;
+
+/**
+ * Measures the time to open the channels of a worker process with many gRPC pollers, and the
+ * threads they leave running. No server is needed, the channels only try to connect. Run the main
+ * method, before and after a change to {@link ChannelManager}.
+ */
+public class ChannelManagerBenchmark {
+
+    private static final int CLIENTS = 50;
+
+    public static void main(String[] args) throws Exception {
+        ApiClient apiClient = new ApiClient("http://localhost:8080/api");
+        apiClient.setUseGRPC("localhost", 18090);
+        apiClient.setExecutorThreadCount(4);
+
+        int threadsBefore = Thread.activeCount();
+        long start = System.nanoTime();
+        List<ManagedChannel> channels = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            ManagedChannel channel = ChannelManager.getChannel(apiClient);
+            // Starts an event loop thread, as the first call of a client would
+            channel.getState(true);
+            channels.add(channel);
+        }
+        long elapsed = System.nanoTime() - start;
+        Thread.sleep(500);
+        System.out.printf(
+                "%d clients: %d ms to open the channels, %d threads started, %d channels open%n",
+                CLIENTS,
+                TimeUnit.NANOSECONDS.toMillis(elapsed),
+                Thread.activeCount() - threadsBefore,
+                ChannelManager.getOpenChannelCount());
+        channels.forEach(ManagedChannel::shutdown);
+    }
+}
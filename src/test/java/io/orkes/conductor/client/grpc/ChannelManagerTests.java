@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.grpc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.orkes.conductor.client.ApiClient;
+
+import io.grpc.ManagedChannel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelManagerTests {
+
+    @Test
+    void channelIsSharedUntilTheLastReferenceIsReleased() {
+        int openChannels = ChannelManager.getOpenChannelCount();
+        ManagedChannel first = ChannelManager.getChannel(apiClient(18090));
+        ManagedChannel second = ChannelManager.getChannel(apiClient(18090));
+        ManagedChannel other = ChannelManager.getChannel(apiClient(18091));
+        assertEquals(openChannels + 2, ChannelManager.getOpenChannelCount());
+        assertEquals(first.authority(), second.authority());
+
+        first.shutdown();
+        // Releasing twice must not release the other reference
+        first.shutdownNow();
+        assertTrue(first.isShutdown());
+        assertTrue(first.isTerminated());
+        assertFalse(second.isShutdown());
+        assertEquals(openChannels + 2, ChannelManager.getOpenChannelCount());
+
+        second.shutdown();
+        other.shutdown();
+        assertEquals(openChannels, ChannelManager.getOpenChannelCount());
+    }
+
+    @Test
+    void awaitTerminationReturnsRightAwayForAReferenceStillInUse() throws Exception {
+        ManagedChannel channel = ChannelManager.getChannel(apiClient(18092));
+
+        long start = System.nanoTime();
+        assertFalse(channel.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000);
+
+        channel.shutdown();
+        assertTrue(channel.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private static ApiClient apiClient(int port) {
+        ApiClient apiClient = new ApiClient("http://localhost:8080/api");
+        apiClient.setUseGRPC("localhost", port);
+        // Epoll is on the test classpath for the transport benchmark, the default NIO path is tested here
+        apiClient.setGrpcTransport(GrpcTransport.NIO);
+        return apiClient;
+    }
+}
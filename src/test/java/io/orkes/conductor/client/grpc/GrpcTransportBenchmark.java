@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.grpc;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+import com.netflix.conductor.grpc.TaskServiceGrpc;
+import com.netflix.conductor.grpc.TaskServicePb;
+import com.netflix.conductor.proto.TaskPb;
+
+import io.orkes.conductor.client.ApiClient;
+
+import io.grpc.Server;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Compares the poll and update round-trip latency of the NIO and epoll transports against a
+ * loopback stand-in server. The epoll run needs netty-transport-native-epoll on the classpath
+ * and Linux, it is reported as NIO otherwise. Run the main method.
+ */
+public class GrpcTransportBenchmark {
+
+    private static final int WARM_UP = 2_000;
+
+    private static final int ROUND_TRIPS = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        Server server = NettyServerBuilder.forPort(0).addService(new StandInTaskService()).build().start();
+        try {
+            for (int round = 0; round < 2; round++) {
+                run(server.getPort(), GrpcTransport.NIO);
+                run(server.getPort(), GrpcTransport.EPOLL);
+            }
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
+    private static void run(int port, GrpcTransport transport) throws Exception {
+        ApiClient apiClient = new ApiClient("http://localhost:8080/api");
+        apiClient.setUseGRPC("localhost", port);
+        apiClient.setGrpcTransport(transport);
+        try (GrpcTaskClient taskClient = new GrpcTaskClient(apiClient)) {
+            for (int i = 0; i < WARM_UP; i++) {
+                roundTrip(taskClient);
+            }
+            long[] latencies = new long[ROUND_TRIPS];
+            for (int i = 0; i < ROUND_TRIPS; i++) {
+                long start = System.nanoTime();
+                roundTrip(taskClient);
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            System.out.printf(
+                    "%-5s poll+update p50 %4d us, p99 %5d us, mean %4d us%n",
+                    ChannelManager.resolveTransport(transport),
+                    TimeUnit.NANOSECONDS.toMicros(latencies[ROUND_TRIPS / 2]),
+                    TimeUnit.NANOSECONDS.toMicros(latencies[ROUND_TRIPS * 99 / 100]),
+                    TimeUnit.NANOSECONDS.toMicros((long) Arrays.stream(latencies).average().orElse(0)));
+        }
+    }
+
+    private static void roundTrip(GrpcTaskClient taskClient) {
+        List<Task> tasks = taskClient.batchPoll("benchmark_task", "worker", null, 1, 100);
+        TaskResult result = new TaskResult();
+        result.setTaskId(tasks.get(0).getTaskId());
+        result.setWorkflowInstanceId("workflow");
+        result.setStatus(TaskResult.Status.COMPLETED);
+        taskClient.updateTask(result);
+    }
+
+    private static class StandInTaskService extends TaskServiceGrpc.TaskServiceImplBase {
+
+        @Override
+        public void batchPoll(TaskServicePb.BatchPollRequest request, StreamObserver<TaskPb.Task> responseObserver) {
+            for (int i = 0; i < request.getCount(); i++) {
+                responseObserver.onNext(
+                        TaskPb.Task.newBuilder()
+                                .setTaskId("task-" + i)
+                                .setTaskType(request.getTaskType())
+                                .setTaskDefName(request.getTaskType())
+                                .setWorkflowInstanceId("workflow")
+                                .build());
+            }
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void updateTask(TaskServicePb.UpdateTaskRequest request, StreamObserver<TaskServicePb.UpdateTaskResponse> responseObserver) {
+            responseObserver.onNext(
+                    TaskServicePb.UpdateTaskResponse.newBuilder().setTaskId(request.getResult().getTaskId()).build());
+            responseObserver.onCompleted();
+        }
+    }
+}
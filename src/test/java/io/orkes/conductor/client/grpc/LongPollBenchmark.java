@@ -0,0 +1,167 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.grpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+import com.netflix.conductor.grpc.TaskServiceGrpc;
+import com.netflix.conductor.grpc.TaskServicePb;
+import com.netflix.conductor.proto.TaskPb;
+
+import io.orkes.conductor.client.ApiClient;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.grpc.Server;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Compares the default gRPC polling, every polling interval, with the long poll mode against a
+ * loopback stand-in server that holds the polls until tasks arrive. Tasks are added at a steady
+ * rate, the benchmark reports the tasks completed per second and the time from the task being
+ * queued to its execution starting. Run the main method.
+ */
+public class LongPollBenchmark {
+
+    private static final int TASKS = 5_000;
+
+    private static final int TASKS_PER_SECOND = 2_000;
+
+    private static final int THREADS = 8;
+
+    private static final int POLLING_INTERVAL_MILLIS = 100;
+
+    private static final int LONG_POLL_TIMEOUT_MILLIS = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        for (int round = 0; round < 2; round++) {
+            run("interval polling", 0);
+            run("long poll", LONG_POLL_TIMEOUT_MILLIS);
+        }
+    }
+
+    private static void run(String name, int longPollTimeoutMillis) throws Exception {
+        StandInTaskService service = new StandInTaskService();
+        Server server = NettyServerBuilder.forPort(0).addService(service).build().start();
+        ApiClient apiClient = new ApiClient("http://localhost:8080/api");
+        apiClient.setUseGRPC("localhost", server.getPort());
+        List<Long> pickupNanos = new ArrayList<>();
+        ConcurrentLinkedQueue<Long> pickups = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        PooledPoller pooledPoller = new PooledPoller(apiClient, worker(pickups), null, THREADS, 100, executor, THREADS, null, null, longPollTimeoutMillis);
+        try {
+            pooledPoller.start();
+            long start = System.nanoTime();
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / TASKS_PER_SECOND;
+            for (int i = 0; i < TASKS; i++) {
+                long due = start + i * intervalNanos;
+                while (System.nanoTime() < due) {
+                    Thread.onSpinWait();
+                }
+                service.queue.add(System.nanoTime());
+            }
+            while (service.updates.get() < TASKS) {
+                Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+            }
+            long elapsed = System.nanoTime() - start;
+            pickupNanos.addAll(pickups);
+            pickupNanos.sort(Long::compare);
+            System.out.printf(
+                    "%-16s %6.0f tasks/s, pickup p50 %5.1f ms, p99 %5.1f ms%n",
+                    name,
+                    TASKS * 1e9 / elapsed,
+                    pickupNanos.get(pickupNanos.size() / 2) / 1e6,
+                    pickupNanos.get(pickupNanos.size() * 99 / 100) / 1e6);
+        } finally {
+            pooledPoller.stopWorkers();
+            executor.shutdownNow();
+            pooledPoller.close();
+            server.shutdownNow();
+        }
+    }
+
+    private static Worker worker(ConcurrentLinkedQueue<Long> pickups) {
+        return new Worker() {
+
+            @Override
+            public String getTaskDefName() {
+                return "benchmark_task";
+            }
+
+            @Override
+            public TaskResult execute(Task task) {
+                pickups.add(System.nanoTime() - Long.parseLong(task.getTaskId()));
+                TaskResult result = new TaskResult(task);
+                result.setStatus(TaskResult.Status.COMPLETED);
+                return result;
+            }
+
+            @Override
+            public int getPollingInterval() {
+                return POLLING_INTERVAL_MILLIS;
+            }
+        };
+    }
+
+    /** Holds a poll until a task is queued or the timeout expires, like the server does. */
+    private static class StandInTaskService extends TaskServiceGrpc.TaskServiceImplBase {
+
+        private final BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+
+        private final AtomicInteger updates = new AtomicInteger();
+
+        @Override
+        public void batchPoll(TaskServicePb.BatchPollRequest request, StreamObserver<TaskPb.Task> responseObserver) {
+            List<Long> queuedAt = new ArrayList<>();
+            try {
+                Long first = queue.poll(Math.max(1, request.getTimeout()), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    queuedAt.add(first);
+                    queue.drainTo(queuedAt, request.getCount() - 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Long nanos : queuedAt) {
+                responseObserver.onNext(
+                        TaskPb.Task.newBuilder()
+                                .setTaskId(String.valueOf(nanos))
+                                .setTaskType(request.getTaskType())
+                                .setTaskDefName(request.getTaskType())
+                                .setWorkflowInstanceId("workflow")
+                                .setStatus(TaskPb.Task.Status.IN_PROGRESS)
+                                .build());
+            }
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void updateTask(TaskServicePb.UpdateTaskRequest request, StreamObserver<TaskServicePb.UpdateTaskResponse> responseObserver) {
+            updates.incrementAndGet();
+            responseObserver.onNext(
+                    TaskServicePb.UpdateTaskResponse.newBuilder().setTaskId(request.getResult().getTaskId()).build());
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.grpc;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netflix.conductor.client.worker.Worker;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+import com.netflix.conductor.grpc.TaskServiceGrpc;
+import com.netflix.conductor.grpc.TaskServicePb;
+import com.netflix.conductor.proto.TaskPb;
+
+import io.orkes.conductor.client.ApiClient;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.grpc.Server;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Runs a single gRPC worker thread against a loopback stand-in server that takes {@value
+ * #UPDATE_LATENCY_MILLIS} ms to acknowledge an update. Waiting for each update would cap the
+ * thread at {@code 1000 / UPDATE_LATENCY_MILLIS} tasks per second, with the updates pipelined it is
+ * bounded by the update window of the channel instead. Run the main method.
+ */
+public class PipelinedUpdateBenchmark {
+
+    private static final int TASKS = 5_000;
+
+    private static final int UPDATE_LATENCY_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        for (int round = 0; round < 2; round++) {
+            run();
+        }
+    }
+
+    private static void run() throws Exception {
+        StandInTaskService service = new StandInTaskService();
+        Server server = NettyServerBuilder.forPort(0).addService(service).build().start();
+        ApiClient apiClient = new ApiClient("http://localhost:8080/api");
+        apiClient.setUseGRPC("localhost", server.getPort());
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        PooledPoller pooledPoller = new PooledPoller(apiClient, worker(), null, 1, 100, executor, 1);
+        try {
+            long start = System.nanoTime();
+            pooledPoller.start();
+            while (service.updates.get() < TASKS) {
+                Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf(
+                    "1 thread, %d ms updates: %6.0f tasks/s, %d tasks/s when waiting for each update%n",
+                    UPDATE_LATENCY_MILLIS,
+                    TASKS * 1e9 / elapsed,
+                    1000 / UPDATE_LATENCY_MILLIS);
+        } finally {
+            pooledPoller.stopWorkers();
+            executor.shutdownNow();
+            pooledPoller.awaitExecutions(5_000);
+            pooledPoller.close();
+            service.scheduler.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    private static Worker worker() {
+        return new Worker() {
+
+            @Override
+            public String getTaskDefName() {
+                return "benchmark_task";
+            }
+
+            @Override
+            public TaskResult execute(Task task) {
+                TaskResult result = new TaskResult(task);
+                result.setStatus(TaskResult.Status.COMPLETED);
+                return result;
+            }
+
+            @Override
+            public int getPollingInterval() {
+                return 1;
+            }
+        };
+    }
+
+    /** Always has tasks, and acknowledges the updates after a delay. */
+    private static class StandInTaskService extends TaskServiceGrpc.TaskServiceImplBase {
+
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        private final AtomicInteger polled = new AtomicInteger();
+
+        private final AtomicInteger updates = new AtomicInteger();
+
+        @Override
+        public void batchPoll(TaskServicePb.BatchPollRequest request, StreamObserver<TaskPb.Task> responseObserver) {
+            for (int i = 0; i < request.getCount(); i++) {
+                responseObserver.onNext(
+                        TaskPb.Task.newBuilder()
+                                .setTaskId("t-" + polled.incrementAndGet())
+                                .setTaskType(request.getTaskType())
+                                .setTaskDefName(request.getTaskType())
+                                .setWorkflowInstanceId("workflow")
+                                .setStatus(TaskPb.Task.Status.IN_PROGRESS)
+                                .build());
+            }
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void updateTask(TaskServicePb.UpdateTaskRequest request, StreamObserver<TaskServicePb.UpdateTaskResponse> responseObserver) {
+            scheduler.schedule(() -> {
+                updates.incrementAndGet();
+                responseObserver.onNext(
+                        TaskServicePb.UpdateTaskResponse.newBuilder().setTaskId(request.getResult().getTaskId()).build());
+                responseObserver.onCompleted();
+            }, UPDATE_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
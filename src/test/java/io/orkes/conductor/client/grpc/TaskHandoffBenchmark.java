@@ -0,0 +1,190 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.grpc;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Compares the handoff of tasks from the poller to the worker threads, with the latch and holder
+ * queue {@link PooledPoller} used before and with {@link TaskHandoff}, at 100 and 1000 worker
+ * threads. Reports the latency from a task being handed over to a worker getting it, and the
+ * bytes allocated per task by all the threads. Run the main method.
+ */
+public class TaskHandoffBenchmark {
+
+    private static final int TASKS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        for (int round = 0; round < 2; round++) {
+            for (int workers : new int[] {100, 1000}) {
+                run("latch queue", workers, new LatchHandoff());
+                run("lock-free", workers, new LockFreeHandoff(workers));
+            }
+        }
+    }
+
+    private static void run(String name, int workers, Handoff handoff) throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        BenchmarkTask[] tasks = new BenchmarkTask[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            tasks[i] = new BenchmarkTask();
+        }
+        long[] latencies = new long[TASKS];
+        AtomicInteger received = new AtomicInteger();
+        Thread[] threads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            int workerId = i;
+            threads[i] = new Thread(() -> {
+                BenchmarkTask task;
+                while ((task = handoff.take(workerId)) != null) {
+                    latencies[received.getAndIncrement()] = System.nanoTime() - task.handedOverAt;
+                }
+            });
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+
+        long[] threadIds = new long[workers + 1];
+        for (int i = 0; i < workers; i++) {
+            threadIds[i] = threads[i].getId();
+        }
+        threadIds[workers] = Thread.currentThread().getId();
+        long allocatedBefore = Arrays.stream(threadMXBean.getThreadAllocatedBytes(threadIds)).sum();
+        long start = System.nanoTime();
+        for (BenchmarkTask task : tasks) {
+            task.handedOverAt = System.nanoTime();
+            while (!handoff.offer(task)) {
+                Thread.onSpinWait();
+            }
+        }
+        while (received.get() < TASKS) {
+            Thread.onSpinWait();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = Arrays.stream(threadMXBean.getThreadAllocatedBytes(threadIds)).sum() - allocatedBefore;
+        handoff.close();
+
+        Arrays.sort(latencies);
+        System.out.printf(
+                "%-11s %4d workers: %7.0f tasks/ms, latency p50 %6.1f us, p99 %8.1f us, %6.1f bytes/task%n",
+                name,
+                workers,
+                TASKS / (elapsed / 1e6),
+                latencies[TASKS / 2] / 1e3,
+                latencies[TASKS * 99 / 100] / 1e3,
+                (double) allocated / TASKS);
+    }
+
+    private static class BenchmarkTask {
+
+        private volatile long handedOverAt;
+    }
+
+    private interface Handoff {
+
+        boolean offer(BenchmarkTask task);
+
+        BenchmarkTask take(int workerId);
+
+        void close();
+    }
+
+    private static class LockFreeHandoff implements Handoff {
+
+        private final TaskHandoff<BenchmarkTask> handoff;
+
+        private LockFreeHandoff(int workers) {
+            this.handoff = new TaskHandoff<>(workers);
+        }
+
+        @Override
+        public boolean offer(BenchmarkTask task) {
+            return handoff.offer(task);
+        }
+
+        @Override
+        public BenchmarkTask take(int workerId) {
+            return handoff.take(workerId);
+        }
+
+        @Override
+        public void close() {
+            handoff.close();
+        }
+    }
+
+    /** The handoff PooledPoller used before, a latch and a holder per task. */
+    private static class LatchHandoff implements Handoff {
+
+        private final ArrayBlockingQueue<Holder> holders = new ArrayBlockingQueue<>(10000);
+
+        private volatile boolean closed;
+
+        @Override
+        public boolean offer(BenchmarkTask task) {
+            try {
+                Holder holder = holders.poll(1000, TimeUnit.MILLISECONDS);
+                if (holder == null) {
+                    return false;
+                }
+                holder.task = task;
+                holder.latch.countDown();
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public BenchmarkTask take(int workerId) {
+            if (closed) {
+                return null;
+            }
+            Holder holder = new Holder();
+            try {
+                holders.put(holder);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Uninterruptibles.awaitUninterruptibly(holder.latch);
+            return holder.task;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            Holder holder;
+            while ((holder = holders.poll()) != null) {
+                holder.latch.countDown();
+            }
+        }
+
+        private static class Holder {
+
+            private final CountDownLatch latch = new CountDownLatch(1);
+
+            private BenchmarkTask task;
+        }
+    }
+}
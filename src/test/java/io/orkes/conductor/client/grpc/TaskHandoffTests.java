@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.grpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskHandoffTests {
+
+    @Test
+    void everyTaskIsTakenOnceByTheWaitingWorkers() throws Exception {
+        int workers = 8;
+        int tasksPerProducer = 20_000;
+        TaskHandoff<Integer> handoff = new TaskHandoff<>(workers);
+        Set<Integer> taken = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            int workerId = i;
+            threads.add(start(() -> {
+                Integer task;
+                while ((task = handoff.take(workerId)) != null) {
+                    assertTrue(taken.add(task), "Task taken twice: " + task);
+                }
+            }));
+        }
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 2; p++) {
+            int first = p * tasksPerProducer;
+            producers.add(start(() -> {
+                for (int task = first; task < first + tasksPerProducer; task++) {
+                    // Bounded like the poller, which only asks for tasks for the waiting workers
+                    while (!handoff.offer(task)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (taken.size() < 2 * tasksPerProducer) {
+            assertTrue(System.currentTimeMillis() < deadline, "Only " + taken.size() + " tasks taken");
+            Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+        }
+
+        handoff.close();
+        for (Thread thread : threads) {
+            thread.join(5_000);
+            assertFalse(thread.isAlive());
+        }
+        assertNull(handoff.take(0));
+    }
+
+    @Test
+    void offerFailsWhenFull() {
+        TaskHandoff<Integer> handoff = new TaskHandoff<>(1);
+        assertTrue(handoff.offer(1));
+        assertTrue(handoff.offer(2));
+        assertFalse(handoff.offer(3));
+        assertEquals(1, handoff.take(0));
+        assertTrue(handoff.offer(3));
+        assertEquals(2, handoff.size());
+    }
+
+    private static Thread start(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.http;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.netflix.conductor.common.config.ObjectMapperProvider;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.util.LocalFilePayloadStorage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalPayloadStorageTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void outputBelowTheThresholdIsSentInline() throws Exception {
+        OrkesTaskClient taskClient = taskClient();
+
+        Optional<String> path = taskClient.evaluateAndUploadLargePayload(Map.of("value", "small"), "task");
+
+        assertTrue(path.isEmpty());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void outputAboveTheThresholdIsUploaded() throws Exception {
+        OrkesTaskClient taskClient = taskClient();
+        Map<String, Object> output = Map.of("value", "x".repeat(4096));
+
+        Optional<String> path = taskClient.evaluateAndUploadLargePayload(output, "task");
+
+        assertTrue(path.isPresent());
+        Map<?, ?> stored = new ObjectMapperProvider().getObjectMapper()
+                .readValue(directory.resolve(path.get()).toFile(), Map.class);
+        assertEquals(output, stored);
+    }
+
+    private OrkesTaskClient taskClient() {
+        return new OrkesTaskClient(new ApiClient("http://localhost:8080/api"))
+                .withExternalPayloadStorage(new LocalFilePayloadStorage(directory), 1);
+    }
+}
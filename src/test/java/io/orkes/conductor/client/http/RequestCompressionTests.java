@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.http;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import io.orkes.conductor.client.ApiClient;
+import io.orkes.conductor.client.util.FakeConductorServer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestCompressionTests {
+
+    @Test
+    void onlyBodiesAboveTheThresholdAreCompressed() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            ApiClient apiClient = new ApiClient(server.getBasePath()).setRequestCompressionThreshold(4096);
+            OrkesTaskClient taskClient = new OrkesTaskClient(apiClient);
+
+            taskClient.updateTask(taskResult("small", "x"));
+            assertEquals(0, server.getCompressedRequestCount());
+
+            taskClient.updateTask(taskResult("large", "x".repeat(64 * 1024)));
+            assertEquals(1, server.getCompressedRequestCount());
+
+            assertEquals(2, server.getTaskUpdates().size());
+            assertEquals(64 * 1024, ((String) server.getTaskUpdates().get(1).getOutputData().get("value")).length());
+        }
+    }
+
+    @Test
+    void compressionIsOffByDefault() throws Exception {
+        try (FakeConductorServer server = new FakeConductorServer()) {
+            OrkesTaskClient taskClient = new OrkesTaskClient(new ApiClient(server.getBasePath()));
+
+            taskClient.updateTask(taskResult("large", "x".repeat(64 * 1024)));
+
+            assertEquals(0, server.getCompressedRequestCount());
+            assertEquals(1, server.getTaskUpdates().size());
+        }
+    }
+
+    private static TaskResult taskResult(String taskId, String value) {
+        TaskResult result = new TaskResult();
+        result.setTaskId(taskId);
+        result.setWorkflowInstanceId("workflow");
+        result.setStatus(TaskResult.Status.COMPLETED);
+        result.setOutputData(Map.of("value", value));
+        return result;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import com.netflix.conductor.common.config.ObjectMapperProvider;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.metadata.tasks.TaskResult;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal in-process stand-in for the Conductor server, used by tests and benchmarks that must
+ * not depend on a running server. Only the task update and batch poll endpoints are implemented,
+ * an empty batch poll is held for its timeout like on the server.
+ */
+public class FakeConductorServer implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapperProvider().getObjectMapper();
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final List<TaskResult> taskUpdates = new ArrayList<>();
+
+    private final Queue<Task> pendingTasks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger compressedRequests = new AtomicInteger();
+
+    private final Map<String, Integer> rejectedTaskUpdates = new ConcurrentHashMap<>();
+
+    private final AtomicInteger failingTaskUpdates = new AtomicInteger();
+
+    private volatile boolean available = true;
+
+    private volatile long latencyMillis = 0;
+
+    public FakeConductorServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/api/tasks", this::handleTasks);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public String getBasePath() {
+        return "http://localhost:" + server.getAddress().getPort() + "/api";
+    }
+
+    /**
+     * @param available when false, every request fails with 503
+     */
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    /**
+     * @param latencyMillis simulated processing time of every request
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @param taskId task whose updates are rejected from now on
+     * @param status status of the rejections, e.g. 404 for a task the server does not know
+     */
+    public void rejectTaskUpdates(String taskId, int status) {
+        rejectedTaskUpdates.put(taskId, status);
+    }
+
+    /**
+     * @param count number of the next task updates that fail with 503, whatever their task
+     */
+    public void failTaskUpdates(int count) {
+        failingTaskUpdates.set(count);
+    }
+
+    /**
+     * @param tasks tasks returned by the next batch polls of their type and domain
+     */
+    public void addTasks(Task... tasks) {
+        pendingTasks.addAll(Arrays.asList(tasks));
+    }
+
+    public List<TaskResult> getTaskUpdates() {
+        synchronized (taskUpdates) {
+            return new ArrayList<>(taskUpdates);
+        }
+    }
+
+    /**
+     * @return number of requests received with a gzip encoded body
+     */
+    public int getCompressedRequestCount() {
+        return compressedRequests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleTasks(HttpExchange exchange) throws IOException {
+        boolean gzip = "gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+        if (gzip) {
+            compressedRequests.incrementAndGet();
+        }
+        try (InputStream body = gzip ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+            if (latencyMillis > 0) {
+                Uninterruptibles.sleepUninterruptibly(latencyMillis, TimeUnit.MILLISECONDS);
+            }
+            if (!available) {
+                respond(exchange, 503, "Service Unavailable");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            if ("POST".equals(exchange.getRequestMethod()) && "/api/tasks".equals(path)) {
+                TaskResult taskResult = objectMapper.readValue(body, TaskResult.class);
+                if (failingTaskUpdates.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                    respond(exchange, 503, "Service Unavailable");
+                    return;
+                }
+                Integer rejection = rejectedTaskUpdates.get(taskResult.getTaskId());
+                if (rejection != null) {
+                    respond(exchange, rejection, "Rejected");
+                    return;
+                }
+                synchronized (taskUpdates) {
+                    taskUpdates.add(taskResult);
+                }
+                respond(exchange, 200, taskResult.getTaskId());
+                return;
+            }
+            if ("GET".equals(exchange.getRequestMethod()) && path.startsWith("/api/tasks/poll/batch/")) {
+                String taskType = path.substring("/api/tasks/poll/batch/".length());
+                int count = Integer.parseInt(queryParameter(exchange, "count", "1"));
+                String domain = queryParameter(exchange, "domain", null);
+                // Like the server, an empty poll is held until tasks arrive or the timeout expires
+                long deadline = System.currentTimeMillis() + Long.parseLong(queryParameter(exchange, "timeout", "0"));
+                List<Task> tasks = takeTasks(taskType, domain, count);
+                while (tasks.isEmpty() && System.currentTimeMillis() < deadline) {
+                    Uninterruptibles.sleepUninterruptibly(5, TimeUnit.MILLISECONDS);
+                    tasks = takeTasks(taskType, domain, count);
+                }
+                respond(exchange, 200, objectMapper.writeValueAsString(tasks), "application/json");
+                return;
+            }
+            respond(exchange, 404, "Not Found");
+        }
+    }
+
+    private List<Task> takeTasks(String taskType, String domain, int count) {
+        List<Task> tasks = new ArrayList<>();
+        Iterator<Task> pending = pendingTasks.iterator();
+        while (tasks.size() < count && pending.hasNext()) {
+            Task task = pending.next();
+            if (taskType.equals(task.getTaskType())
+                    && Objects.equals(domain, task.getDomain())
+                    && pendingTasks.remove(task)) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name, String defaultValue) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                String[] pair = parameter.split("=", 2);
+                if (pair.length == 2 && pair[0].equals(name)) {
+                    return pair[1];
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        respond(exchange, status, body, "text/plain");
+    }
+
+    private void respond(HttpExchange exchange, int status, String body, String contentType) throws IOException {
+        byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2024 Orkes, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package io.orkes.conductor.client.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+import com.netflix.conductor.common.run.ExternalStorageLocation;
+import com.netflix.conductor.common.utils.ExternalPayloadStorage;
+
+/**
+ * {@link ExternalPayloadStorage} keeping the payloads as files in a local directory, used by tests
+ * that must not depend on a real storage. The path of a payload is its file name.
+ */
+public class LocalFilePayloadStorage implements ExternalPayloadStorage {
+
+    private final Path directory;
+
+    public LocalFilePayloadStorage(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public ExternalStorageLocation getLocation(Operation operation, PayloadType payloadType, String path) {
+        String name = path == null || path.isEmpty()
+                ? payloadType.name().toLowerCase() + "-" + UUID.randomUUID() + ".json"
+                : path;
+        ExternalStorageLocation location = new ExternalStorageLocation();
+        location.setPath(name);
+        location.setUri(directory.resolve(name).toString());
+        return location;
+    }
+
+    @Override
+    public void upload(String uri, InputStream payload, long payloadSize) {
+        try {
+            Files.copy(payload, Path.of(uri), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public InputStream download(String uri) {
+        try {
+            return Files.newInputStream(Path.of(uri));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}